@@ -0,0 +1,47 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inputs shared by the benchmarks.
+ * <p>
+ * The schedule complexity is the amount of days and time period commands in the work time string,
+ * every schedule also has an up on demand, an out of scheduled hours and a UTC shift command.
+ */
+public final class BenchmarkInputs {
+    private static final String[] DAYS = {"Mon-Fri", "Sat", "Sun", "Tue,Thu", "WE", "WD"};
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * @param complexity the amount of days and time period commands.
+     * @return the work time string.
+     */
+    public static String workTime(int complexity) {
+        StringBuilder workTime = new StringBuilder();
+        for (int i = 0; i < complexity; i++) {
+            int startHour = i * 5 % 22;
+            int minute = i * 15 % 60;
+            workTime.append(String.format("[%s %02d:%02d-%02d:%02d]",
+                    DAYS[i % DAYS.length], startHour, minute, startHour + 2, minute));
+        }
+        return workTime.append("[UOD 20:00][OSH 6][UTC+2]").toString();
+    }
+
+    /**
+     * @param workTime the work time string.
+     * @return a /process input on a Monday afternoon shortly after a DST change.
+     */
+    public static Map<String, String> input(String workTime) {
+        Map<String, String> input = new HashMap<>();
+        input.put("Work Hours", workTime);
+        input.put("Current Time", "03/09/2020 18:30:00");
+        input.put("Launch Time", "03/09/2020 17:00:00");
+        input.put("Time Zone", "America/New_York");
+        input.put("Server State", "running");
+        input.put("Patch Time", "[2 Tue 03:00]");
+        return input;
+    }
+}
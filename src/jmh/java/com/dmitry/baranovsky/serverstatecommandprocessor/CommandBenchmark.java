@@ -0,0 +1,108 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleParseException;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the execution of the built-in commands.
+ * Every benchmark executes one command for each of its brackets in a schedule of the given complexity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandBenchmark {
+    @Param({"1", "4", "16"})
+    private int complexity;
+    private EvaluationContext context;
+    private CommandContext commandContext;
+    private PrimitiveCommand[] dateTimeCommands;
+    private ScheduleNode[] dateTimeNodes;
+    private PrimitiveCommand upOnDemand;
+    private ScheduleNode[] upOnDemandNodes;
+    private PrimitiveCommand outOfScheduledHours;
+    private ScheduleNode[] outOfScheduledHoursNodes;
+    private Command utcOffset;
+    private ScheduleNode[] utcOffsetNodes;
+
+    @Setup
+    public void setup() throws ScheduleParseException {
+        CommandRegistry registry = CommandRegistry.getDefault();
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        context = new EvaluationContext();
+        processor.readInput(context, BenchmarkInputs.input(BenchmarkInputs.workTime(complexity)));
+        commandContext = new CommandContext(context);
+
+        List<ScheduleNode> nodes = ScheduleParser.parse(BenchmarkInputs.workTime(complexity));
+        dateTimeNodes = nodes.subList(0, complexity).toArray(new ScheduleNode[0]);
+        dateTimeCommands = new PrimitiveCommand[complexity];
+        for (int i = 0; i < complexity; i++) {
+            dateTimeCommands[i] = registry.getCommand(dateTimeNodes[i].getKeyword());
+        }
+        StringBuilder upOnDemandTimes = new StringBuilder();
+        StringBuilder outOfScheduledHoursLimits = new StringBuilder();
+        StringBuilder utcOffsets = new StringBuilder();
+        for (int i = 0; i < complexity; i++) {
+            upOnDemandTimes.append(String.format("[UOD %02d:%02d]", i % 24, i * 15 % 60));
+            outOfScheduledHoursLimits.append("[OSH ").append(i % 9 + 1).append(']');
+            utcOffsets.append("[UTC").append(i % 2 == 0 ? '+' : '-').append(i % 12 + 1).append(']');
+        }
+        upOnDemandNodes = ScheduleParser.parse(upOnDemandTimes.toString()).toArray(new ScheduleNode[0]);
+        upOnDemand = registry.getCommand(upOnDemandNodes[0].getKeyword());
+        outOfScheduledHoursNodes = ScheduleParser.parse(outOfScheduledHoursLimits.toString())
+                .toArray(new ScheduleNode[0]);
+        outOfScheduledHours = registry.getCommand(outOfScheduledHoursNodes[0].getKeyword());
+        utcOffsetNodes = ScheduleParser.parse(utcOffsets.toString()).toArray(new ScheduleNode[0]);
+        utcOffset = registry.getConfigCommand(utcOffsetNodes[0].getKeyword());
+    }
+
+    @Benchmark
+    public void dateTime(Blackhole blackhole) {
+        for (int i = 0; i < dateTimeNodes.length; i++) {
+            blackhole.consume(dateTimeCommands[i].execute(commandContext, dateTimeNodes[i]));
+        }
+    }
+
+    @Benchmark
+    public void upOnDemand(Blackhole blackhole) {
+        for (ScheduleNode node : upOnDemandNodes) {
+            blackhole.consume(upOnDemand.execute(commandContext, node));
+        }
+    }
+
+    @Benchmark
+    public void outOfScheduledHours(Blackhole blackhole) {
+        for (ScheduleNode node : outOfScheduledHoursNodes) {
+            blackhole.consume(outOfScheduledHours.execute(commandContext, node));
+        }
+    }
+
+    /**
+     * The shift is reset before every execution, a second UTC command would be an error.
+     */
+    @Benchmark
+    public void utcOffset(Blackhole blackhole) {
+        for (ScheduleNode node : utcOffsetNodes) {
+            context.setUTCshift(0);
+            blackhole.consume(utcOffset.execute(context, node));
+        }
+    }
+}
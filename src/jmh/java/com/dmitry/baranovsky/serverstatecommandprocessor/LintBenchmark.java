@@ -0,0 +1,61 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a /lint request of the given amount of work time strings, half of them valid and half of them
+ * failing, with many duplicates. A rollout of 100 000 schedules is expected to be validated in well under
+ * a second on a few cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LintBenchmark {
+    @Param({"1000", "100000"})
+    private int size;
+    @Param({"100", "10000"})
+    private int distinct;
+    private LintProcessor lintProcessor;
+    private List<String> workTimes;
+
+    @Setup
+    public void setup() {
+        lintProcessor = new LintProcessor(CommandRegistry.getDefault(), 0);
+        workTimes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int variant = i % distinct;
+            workTimes.add(variant % 2 == 0
+                    ? "[Mon-Fri 09:00-" + (10 + variant % 8) + ":" + (10 + variant % 50) + "][UTC+" + variant % 12 + "]"
+                    : "[Mon-Fri 09:00-17:00][Bar" + variant + "]");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        lintProcessor.shutdown();
+    }
+
+    @Benchmark
+    public List<Map<String, String>> lint() {
+        return lintProcessor.run(workTimes);
+    }
+}
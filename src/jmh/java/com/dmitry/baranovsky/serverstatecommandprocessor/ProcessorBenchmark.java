@@ -0,0 +1,107 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the phases of a /process evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessorBenchmark {
+    @Param({"1", "4", "16"})
+    private int complexity;
+    private ServerStateCommandProcessor processor;
+    private Map<String, String> input;
+    private CompiledSchedule schedule;
+    private EvaluationContext context;
+    private Result[] results;
+
+    @Setup
+    public void setup() {
+        processor = new ServerStateCommandProcessor();
+        input = BenchmarkInputs.input(BenchmarkInputs.workTime(complexity));
+        schedule = processor.getScheduleCache().get(input.get("Work Hours"));
+        context = new EvaluationContext();
+        processor.readInput(context, input);
+        results = processor.processCommands(context, schedule);
+    }
+
+    /**
+     * A new processor, excluding the one-time command registry scan.
+     */
+    @Benchmark
+    public ServerStateCommandProcessor construct() {
+        return new ServerStateCommandProcessor();
+    }
+
+    /**
+     * The first evaluation of a processor, including the compilation of the work time string.
+     */
+    @Benchmark
+    public Map<String, String> runCold() {
+        return new ServerStateCommandProcessor().run(input);
+    }
+
+    /**
+     * An evaluation with the work time string already compiled.
+     */
+    @Benchmark
+    public Map<String, String> run() {
+        return processor.run(input);
+    }
+
+    @Benchmark
+    public EvaluationContext readInput() {
+        EvaluationContext context = new EvaluationContext();
+        processor.readInput(context, input);
+        return context;
+    }
+
+    /**
+     * Runs the commands of the compiled schedule, the input has already been read.
+     */
+    @Benchmark
+    public Result[] processCommands() {
+        EvaluationContext context = new EvaluationContext();
+        processor.readInput(context, input);
+        return processor.processCommands(context, schedule);
+    }
+
+    /**
+     * Runs the commands of the compiled schedule until the result is certain, the input has already been read.
+     */
+    @Benchmark
+    public Result[] processPrioritizedCommands() {
+        EvaluationContext context = new EvaluationContext();
+        processor.readInput(context, input);
+        return processor.processPrioritizedCommands(context, schedule);
+    }
+
+    /**
+     * Calculates the result of already executed commands.
+     * The results are not modified, stop reasons are joined in a builder of their own.
+     */
+    @Benchmark
+    public EvaluationContext calculateResult() {
+        processor.calculateResult(context, results);
+        return context;
+    }
+}
@@ -0,0 +1,65 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DateTimeException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the timestamp parser with the regular expression based parsing it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimestampParserBenchmark {
+    private static final String TIME_REGEX = "^(\\d+)/(\\d+)/(\\d+)" +
+            " ([0-9]|0[0-9]|1[0-9]|2[0-3]):([0-5][0-9]):([0-5][0-9])$";
+    @Param({"1/1/2020 1:00:00", "12/31/2021 23:59:59", "02/30/2020 10:00:00"})
+    private String timestamp;
+
+    @Benchmark
+    public long parse() {
+        return TimestampParser.parse(timestamp);
+    }
+
+    /**
+     * The previous parsing: the regular expression is matched, compiled again to extract the groups,
+     * and the fields are converted by {@link ZonedDateTime}.
+     */
+    @Benchmark
+    public long regex() {
+        if (!Pattern.matches(TIME_REGEX, timestamp)) {
+            return TimestampParser.INVALID;
+        }
+        Matcher matcher = Pattern.compile(TIME_REGEX).matcher(timestamp);
+        if (!matcher.matches()) {
+            return TimestampParser.INVALID;
+        }
+        int[] matches = new int[6];
+        for (int i = 0; i < 6; i++) {
+            matches[i] = Integer.parseInt(matcher.group(1 + i));
+        }
+        try {
+            return ZonedDateTime.of(matches[2], matches[0], matches[1],
+                    matches[3], matches[4], matches[5], 0, ZoneOffset.UTC).toEpochSecond();
+        } catch (DateTimeException e) {
+            return TimestampParser.INVALID;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the zone cache lookups with the {@link ZonedDateTime} based local time and daylight saving
+ * calculation they replaced, for moments around the spring forward transition of the given zone in 2020.
+ * The setup fails if the two disagree for any of the moments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZoneCacheBenchmark {
+    private static final int MOMENTS = 1024;
+    @Param({"America/New_York", "Europe/Berlin", "Australia/Lord_Howe"})
+    private String timeZone;
+    private final ZoneCache cache = new ZoneCache(ZoneCache.DEFAULT_SIZE);
+    private final long[] moments = new long[MOMENTS];
+    private ZoneId zoneId;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        zoneId = ZoneId.of(timeZone);
+        long transition = zoneId.getRules()
+                .nextTransition(Instant.parse("2020-01-01T00:00:00Z")).toEpochSecond();
+        for (int i = 0; i < MOMENTS; i++) {
+            // two days on both sides of the transition, in steps a bit over six minutes
+            moments[i] = transition - 2 * 86_400 + i * 337L;
+            if (local(moments[i]) != cached(moments[i])) {
+                throw new IllegalStateException("Zone cache differs for " + timeZone + " at " + moments[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public long zonedDateTime() {
+        return local(moments[next++ & (MOMENTS - 1)]);
+    }
+
+    @Benchmark
+    public long zoneCache() {
+        return cached(moments[next++ & (MOMENTS - 1)]);
+    }
+
+    /**
+     * The local wall-clock time in epoch seconds plus one when daylight saving time is in effect,
+     * calculated the way the processor used to.
+     */
+    private long local(long epochSecond) {
+        ZonedDateTime current = Instant.ofEpochSecond(epochSecond).atZone(ServerStateCommandProcessor.UTC);
+        ZonedDateTime local = current.withZoneSameInstant(zoneId);
+        boolean daylightSavings = zoneId.getRules().isDaylightSavings(current.toInstant());
+        return local.toLocalDateTime().toEpochSecond(ZoneOffset.UTC) * 2 + (daylightSavings ? 1 : 0);
+    }
+
+    private long cached(long epochSecond) {
+        int offsetInfo = cache.get(timeZone).offsetInfo(epochSecond);
+        return (epochSecond + ZoneCache.offsetSeconds(offsetInfo)) * 2
+                + (ZoneCache.isDaylightSavings(offsetInfo) ? 1 : 0);
+    }
+}
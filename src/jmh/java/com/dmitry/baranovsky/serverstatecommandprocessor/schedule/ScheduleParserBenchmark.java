@@ -0,0 +1,49 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and compilation speed of work time strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScheduleParserBenchmark {
+    @Param({"[Mon-Fri 09:00-17:00]",
+            "[Sun 20:00-23:59][WD 00:00-23:55][Sat 00:00-00:55][OSH 4][UTC-3]",
+            "[Mon, Wed, Fri 08:00-18:00][Tue,Thu 10:00-16:00][WE 24h][UOD 12:30][UTC+2]"})
+    private String workTime;
+    private CommandRegistry registry;
+
+    @Setup
+    public void setup() {
+        registry = CommandRegistry.getDefault();
+    }
+
+    @Benchmark
+    public List<ScheduleNode> parse() throws ScheduleParseException {
+        return ScheduleParser.parse(workTime);
+    }
+
+    @Benchmark
+    public CompiledSchedule compile() {
+        return CompiledSchedule.compile(registry, workTime);
+    }
+}
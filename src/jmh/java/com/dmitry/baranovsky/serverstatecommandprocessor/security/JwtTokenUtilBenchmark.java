@@ -0,0 +1,47 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures bearer token validation with and without the verified claims cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JwtTokenUtilBenchmark {
+    @Param({"0", "10000"})
+    private long claimsCacheSize;
+    private JwtTokenUtil jwtTokenUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtTokenUtil = new JwtTokenUtil(claimsCacheSize);
+        userDetails = new User("benchmark", "", new ArrayList<>());
+        token = jwtTokenUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtTokenUtil.validateToken(token, userDetails);
+    }
+}
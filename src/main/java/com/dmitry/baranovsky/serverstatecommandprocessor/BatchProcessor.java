@@ -0,0 +1,191 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates many inputs at once.
+ * <p>
+ * Items are split into chunks that are processed in parallel on a fixed size thread pool.
+ * Every distinct work time string of a batch is compiled only once, on the pool as well,
+ * so the asynchronous methods don't do any work on the calling thread. An item that can't be evaluated
+ * gets an error result without failing the other items.
+ */
+@Component
+public class BatchProcessor {
+    private static final Log logger = LogFactory.getLog(BatchProcessor.class);
+    private final ServerStateCommandProcessor processor;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * The batch processor constructor.
+     *
+     * @param processor   the processor evaluating single items.
+     * @param parallelism the amount of threads, 0 to use one thread per available processor.
+     */
+    @Autowired
+    public BatchProcessor(ServerStateCommandProcessor processor,
+                          @Value("${processor.batch-parallelism:0}") int parallelism) {
+        this.processor = processor;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(this.parallelism,
+                new ThreadFactoryBuilder().setNameFormat("batch-processor-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Processes the given inputs.
+     *
+     * @param inputs the JSONs as taken by {@link ServerStateCommandProcessor#run(Map)}.
+     * @return the results in the order of the inputs.
+     */
+    public List<Map<String, String>> run(List<Map<String, String>> inputs) {
+        return await(runAsync(inputs));
+    }
+
+    /**
+     * Processes the given inputs without blocking the calling thread.
+     *
+     * @param inputs the JSONs as taken by {@link ServerStateCommandProcessor#run(Map)}.
+     * @return the future results in the order of the inputs.
+     */
+    public CompletableFuture<List<Map<String, String>>> runAsync(List<Map<String, String>> inputs) {
+        return runAsync(inputs, input -> input == null ? null : input.get("Work Hours"),
+                processor::run, processor::errorResult);
+    }
+
+    /**
+     * Processes the given inputs and writes the JSON array of their results to the given stream.
+     * The written JSON is the same as the serialized result of {@link #run(List)}.
+     *
+     * @param inputs the JSONs as taken by {@link ServerStateCommandProcessor#run(Map)}.
+     * @param output the stream to write the JSON to, it is neither flushed nor closed.
+     * @throws IOException if writing fails.
+     */
+    public void run(List<Map<String, String>> inputs, OutputStream output) throws IOException {
+        List<EvaluationContext> contexts = await(evaluateAsync(inputs));
+        long start = System.nanoTime();
+        JsonResponseWriter.writeResults(contexts, output);
+        processor.getMetrics().record(ProcessorMetrics.Phase.RESPONSE, System.nanoTime() - start, contexts.size());
+    }
+
+    /**
+     * Evaluates the given inputs without creating result JSONs.
+     *
+     * @return the future evaluated contexts in the order of the inputs.
+     */
+    CompletableFuture<List<EvaluationContext>> evaluateAsync(List<Map<String, String>> inputs) {
+        return runAsync(inputs, input -> input == null ? null : input.get("Work Hours"),
+                processor::evaluate, ServerStateCommandProcessor::errorContext);
+    }
+
+    /**
+     * Processes inputs of any encoding without blocking the calling thread.
+     *
+     * @param inputs      the inputs.
+     * @param workTime    extracts the work time string of an input, may return null.
+     * @param evaluation  evaluates an input using the given compiled schedules.
+     * @param errorResult creates the result of an input that could not be evaluated.
+     * @return the future results in the order of the inputs.
+     */
+    <I, R> CompletableFuture<List<R>> runAsync(List<I> inputs, Function<I, String> workTime,
+                                               BiFunction<I, Function<String, CompiledSchedule>, R> evaluation,
+                                               Function<String, R> errorResult) {
+        return supplyAsync(() -> compile(inputs, workTime))
+                .thenCompose(schedules -> runChunks(inputs, schedules, evaluation, errorResult));
+    }
+
+    /**
+     * Runs a task on the pool of the batch processor.
+     *
+     * @return the future result of the task.
+     */
+    <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * Compiles every distinct work time string of the inputs.
+     */
+    private <I> Map<String, CompiledSchedule> compile(List<I> inputs, Function<I, String> workTime) {
+        Map<String, CompiledSchedule> schedules = new HashMap<>();
+        for (I input : inputs) {
+            String key = workTime.apply(input);
+            if (key != null && !key.isEmpty()) {
+                schedules.computeIfAbsent(key, processor.getScheduleCache()::get);
+            }
+        }
+        return schedules;
+    }
+
+    private <I, R> CompletableFuture<List<R>> runChunks(List<I> inputs, Map<String, CompiledSchedule> schedules,
+                                                        BiFunction<I, Function<String, CompiledSchedule>, R> evaluation,
+                                                        Function<String, R> errorResult) {
+        @SuppressWarnings("unchecked")
+        R[] results = (R[]) new Object[inputs.size()];
+        int chunkSize = Math.max(1, (inputs.size() + parallelism - 1) / parallelism);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int chunkStart = 0; chunkStart < inputs.size(); chunkStart += chunkSize) {
+            int start = chunkStart;
+            int end = Math.min(inputs.size(), chunkStart + chunkSize);
+            chunks.add(CompletableFuture.runAsync(() -> {
+                for (int i = start; i < end; i++) {
+                    results[i] = runItem(inputs.get(i), schedules, evaluation, errorResult);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]))
+                .thenApply(done -> Arrays.asList(results));
+    }
+
+    private <I, R> R runItem(I input, Map<String, CompiledSchedule> schedules,
+                             BiFunction<I, Function<String, CompiledSchedule>, R> evaluation,
+                             Function<String, R> errorResult) {
+        try {
+            return evaluation.apply(input, schedules::get);
+        } catch (RuntimeException e) {
+            logger.warn("Could not process batch item", e);
+            return errorResult.apply("Could not process input");
+        }
+    }
+
+    /**
+     * Waits for the results of a batch.
+     */
+    static <R> R await(CompletableFuture<R> results) {
+        try {
+            return results.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch processing was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch processing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
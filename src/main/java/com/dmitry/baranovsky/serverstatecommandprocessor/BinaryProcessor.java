@@ -0,0 +1,82 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Evaluates inputs encoded with the {@link BinaryProtocol}.
+ * <p>
+ * Timestamps arrive as epoch seconds and the server state as a code, so no text has to be parsed
+ * apart from the work time, time zone and patch time strings. The results are the same as for JSON inputs.
+ */
+@Component
+public class BinaryProcessor {
+    private final ServerStateCommandProcessor processor;
+    private final BatchProcessor batchProcessor;
+
+    /**
+     * The binary processor constructor.
+     *
+     * @param processor      the processor evaluating single inputs.
+     * @param batchProcessor the processor evaluating batches.
+     */
+    @Autowired
+    public BinaryProcessor(ServerStateCommandProcessor processor, BatchProcessor batchProcessor) {
+        this.processor = processor;
+        this.batchProcessor = batchProcessor;
+    }
+
+    /**
+     * Processes a message holding a single input.
+     *
+     * @param message the encoded input.
+     * @return the encoded result.
+     * @throws BinaryProtocol.MalformedMessageException if the message can't be decoded.
+     */
+    public byte[] run(byte[] message) {
+        BinaryProtocol.Request request = BinaryProtocol.readRequest(message);
+        EvaluationContext context = processor.run(request, processor.getScheduleCache()::get);
+        long start = System.nanoTime();
+        byte[] result = BinaryProtocol.writeResult(context);
+        processor.getMetrics().record(ProcessorMetrics.Phase.RESPONSE, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Processes a message holding a batch of inputs.
+     *
+     * @param message the encoded inputs.
+     * @return the encoded results in the order of the inputs.
+     * @throws BinaryProtocol.MalformedMessageException if the message can't be decoded.
+     */
+    public byte[] runBatch(byte[] message) {
+        return BatchProcessor.await(runBatchAsync(BinaryProtocol.readRequests(message)));
+    }
+
+    /**
+     * Processes a message holding a batch of inputs without blocking the calling thread,
+     * the message is decoded on the pool of the batch processor.
+     *
+     * @param message the encoded inputs.
+     * @return the future encoded results in the order of the inputs, completed exceptionally with
+     * a {@link BinaryProtocol.MalformedMessageException} if the message can't be decoded.
+     */
+    public CompletableFuture<byte[]> runBatchAsync(byte[] message) {
+        return batchProcessor.supplyAsync(() -> BinaryProtocol.readRequests(message)).thenCompose(this::runBatchAsync);
+    }
+
+    private CompletableFuture<byte[]> runBatchAsync(List<BinaryProtocol.Request> requests) {
+        return batchProcessor.runAsync(requests, BinaryProtocol.Request::getWorkTime,
+                processor::run, ServerStateCommandProcessor::errorContext)
+                .thenApply(contexts -> {
+                    long start = System.nanoTime();
+                    byte[] results = BinaryProtocol.writeResults(contexts);
+                    processor.getMetrics().record(ProcessorMetrics.Phase.RESPONSE,
+                            System.nanoTime() - start, contexts.size());
+                    return results;
+                });
+    }
+}
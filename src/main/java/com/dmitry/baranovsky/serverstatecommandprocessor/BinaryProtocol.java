@@ -0,0 +1,362 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The compact binary encoding of /process inputs and results.
+ * <p>
+ * Integers are unsigned LEB128 varints, signed integers are zigzag encoded first.
+ * Strings are a varint byte length followed by the UTF-8 bytes.
+ * <pre>
+ * input:  state       u8, 0 stopped, 1 running
+ *         currentTime signed, epoch seconds
+ *         launchTime  signed, epoch seconds
+ *         workHours   string
+ *         timeZone    string
+ *         patchTime   string, empty if there is none
+ * result: flags       u8, 1 error, 2 local time present
+ *         action      u8, 0 none, 1 Start, 2 Stop, 3 Skip Start, 4 Skip Stop
+ *         localTime   signed, seconds of the local date time since 1970-01-01T00:00, only if present
+ *         reason      string
+ *         error       string
+ * </pre>
+ * A single message holds exactly one record, a batch message holds a varint count followed by the records.
+ */
+public final class BinaryProtocol {
+    public static final String MEDIA_TYPE = "application/x-server-state";
+    public static final int STOPPED = 0;
+    public static final int RUNNING = 1;
+    private static final int ERROR_FLAG = 1;
+    private static final int LOCAL_TIME_FLAG = 2;
+    private static final int MIN_INPUT_SIZE = 6;
+    private static final int MIN_RESULT_SIZE = 4;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * A decoded input, the binary counterpart of the /process input JSON.
+     */
+    @Getter
+    public static final class Request {
+        private final int serverState;
+        private final long currentTime;
+        private final long launchTime;
+        private final String workTime;
+        private final String timeZone;
+        private final String patchTime;
+
+        /**
+         * @param serverState {@link #STOPPED} or {@link #RUNNING}.
+         * @param currentTime the current time in epoch seconds.
+         * @param launchTime  the launch time in epoch seconds.
+         * @param workTime    the work time string.
+         * @param timeZone    the time zone id.
+         * @param patchTime   the patch time, empty if there is none.
+         */
+        public Request(int serverState, long currentTime, long launchTime,
+                       String workTime, String timeZone, String patchTime) {
+            this.serverState = serverState;
+            this.currentTime = currentTime;
+            this.launchTime = launchTime;
+            this.workTime = workTime;
+            this.timeZone = timeZone;
+            this.patchTime = patchTime;
+        }
+    }
+
+    /**
+     * A decoded result, the binary counterpart of the /process result JSON.
+     */
+    @Getter
+    public static final class Response {
+        private final boolean error;
+        private final int action;
+        private final boolean localTimePresent;
+        private final long localTime;
+        private final String reason;
+        private final String errorMessage;
+
+        Response(boolean error, int action, boolean localTimePresent, long localTime,
+                 String reason, String errorMessage) {
+            this.error = error;
+            this.action = action;
+            this.localTimePresent = localTimePresent;
+            this.localTime = localTime;
+            this.reason = reason;
+            this.errorMessage = errorMessage;
+        }
+    }
+
+    /**
+     * Thrown when a message is truncated or has trailing bytes.
+     */
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public static class MalformedMessageException extends IllegalArgumentException {
+        private static final long serialVersionUID = -4387622017529305528L;
+
+        public MalformedMessageException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Decodes a message holding a single input.
+     */
+    public static Request readRequest(byte[] message) {
+        Reader reader = new Reader(message);
+        Request request = reader.readRequest();
+        reader.expectEnd();
+        return request;
+    }
+
+    /**
+     * Decodes a message holding a batch of inputs.
+     */
+    public static List<Request> readRequests(byte[] message) {
+        Reader reader = new Reader(message);
+        long count = reader.readVarLong();
+        if (count < 0 || count > reader.remaining() / MIN_INPUT_SIZE) {
+            throw new MalformedMessageException("Invalid record count: " + count);
+        }
+        List<Request> requests = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            requests.add(reader.readRequest());
+        }
+        reader.expectEnd();
+        return requests;
+    }
+
+    /**
+     * Encodes a message holding a single input.
+     */
+    public static byte[] writeRequest(Request request) {
+        Writer writer = new Writer();
+        writer.writeRequest(request);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes a message holding a batch of inputs.
+     */
+    public static byte[] writeRequests(List<Request> requests) {
+        Writer writer = new Writer();
+        writer.writeVarLong(requests.size());
+        for (Request request : requests) {
+            writer.writeRequest(request);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a message holding a single result.
+     */
+    public static Response readResponse(byte[] message) {
+        Reader reader = new Reader(message);
+        Response response = reader.readResponse();
+        reader.expectEnd();
+        return response;
+    }
+
+    /**
+     * Decodes a message holding a batch of results.
+     */
+    public static List<Response> readResponses(byte[] message) {
+        Reader reader = new Reader(message);
+        long count = reader.readVarLong();
+        if (count < 0 || count > reader.remaining() / MIN_RESULT_SIZE) {
+            throw new MalformedMessageException("Invalid record count: " + count);
+        }
+        List<Response> responses = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            responses.add(reader.readResponse());
+        }
+        reader.expectEnd();
+        return responses;
+    }
+
+    /**
+     * Encodes the result of an evaluation.
+     */
+    static byte[] writeResult(EvaluationContext context) {
+        Writer writer = new Writer();
+        writer.writeResult(context);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes the results of a batch evaluation.
+     */
+    static byte[] writeResults(List<EvaluationContext> contexts) {
+        Writer writer = new Writer();
+        writer.writeVarLong(contexts.size());
+        for (EvaluationContext context : contexts) {
+            writer.writeResult(context);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @return the code of the action as seen by clients, equal codes have equal "Action" values in JSON.
+     */
+    static int actionCode(ServerStateCommandProcessor.Action action) {
+        if (action == null) {
+            return 0;
+        }
+        switch (action) {
+            case ON:
+                return 1;
+            case OFF:
+                return 2;
+            case SKIP_START:
+                return 3;
+            case SKIP_END:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.length - position;
+        }
+
+        void expectEnd() {
+            if (position != buffer.length) {
+                throw new MalformedMessageException("Unexpected data at byte " + position);
+            }
+        }
+
+        Request readRequest() {
+            int serverState = readByte();
+            long currentTime = readSignedVarLong();
+            long launchTime = readSignedVarLong();
+            String workTime = readString();
+            String timeZone = readString();
+            String patchTime = readString();
+            return new Request(serverState, currentTime, launchTime, workTime, timeZone, patchTime);
+        }
+
+        Response readResponse() {
+            int flags = readByte();
+            int action = readByte();
+            boolean localTimePresent = (flags & LOCAL_TIME_FLAG) != 0;
+            long localTime = localTimePresent ? readSignedVarLong() : 0;
+            String reason = readString();
+            String errorMessage = readString();
+            return new Response((flags & ERROR_FLAG) != 0, action, localTimePresent, localTime, reason, errorMessage);
+        }
+
+        int readByte() {
+            if (position == buffer.length) {
+                throw new MalformedMessageException("Unexpected end of message");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new MalformedMessageException("Varint too long at byte " + position);
+        }
+
+        long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length < 0 || length > remaining()) {
+                throw new MalformedMessageException("Invalid string length: " + length);
+            }
+            String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[64];
+        private int size;
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        void writeRequest(Request request) {
+            writeByte(request.getServerState());
+            writeSignedVarLong(request.getCurrentTime());
+            writeSignedVarLong(request.getLaunchTime());
+            writeString(request.getWorkTime());
+            writeString(request.getTimeZone());
+            writeString(request.getPatchTime());
+        }
+
+        void writeResult(EvaluationContext context) {
+            boolean error = context.error != null;
+            boolean localTime = context.localDateTime != EvaluationContext.NO_LOCAL_TIME;
+            int flags = (error ? ERROR_FLAG : 0) | (localTime ? LOCAL_TIME_FLAG : 0);
+            writeByte(flags);
+            writeByte(error ? 0 : actionCode(context.action));
+            if (localTime) {
+                writeSignedVarLong(context.localDateTime);
+            }
+            writeString(error ? "" : context.reason);
+            writeString(error ? context.error : "");
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+}
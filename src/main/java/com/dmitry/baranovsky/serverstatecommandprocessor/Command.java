@@ -1,21 +1,25 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor;
 
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
+
 /**
  * Base Command class
- * All commands must extend this class
+ * Configuration commands and commands written before {@link PrimitiveCommand} extend this class,
+ * the registry runs primary commands of this kind through an adapter.
+ * <p>
+ * Commands are stateless singletons shared by all processors,
+ * everything needed for the evaluation is passed to {@link #execute}.
  */
 public abstract class Command {
-    protected final ServerStateCommandProcessor processor;
-
-    public Command(ServerStateCommandProcessor processor) {
-        this.processor = processor;
-    }
 
     /**
-     * Executes the command checking its arguments
+     * Executes the command
+     * The arguments of built-in commands are validated by the parser,
+     * other commands can check {@link ScheduleNode#getArgument()} themselves.
      *
-     * @param argument String containing the command name and its arguments if any
+     * @param context the state of the current evaluation
+     * @param node    the parsed command with its arguments
      * @return a Result enum containing errors if needed
      */
-    public abstract Result execute(String argument);
-}
\ No newline at end of file
+    public abstract Result execute(EvaluationContext context, ScheduleNode node);
+}
@@ -0,0 +1,77 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.WeekBitmap;
+import lombok.Getter;
+
+/**
+ * The time and server state of an evaluation as plain numbers, passed to {@link PrimitiveCommand}s.
+ * <p>
+ * All values are computed once per evaluation from the current time after the daylight saving
+ * and UTC shifts have been applied, so commands never have to go through {@link java.time.ZonedDateTime}.
+ */
+public final class CommandContext {
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_PER_CYCLE = 146_097;
+    private static final long DAYS_0000_TO_1970 = 719_468;
+    /**
+     * The evaluation the values were computed from, only used by commands written for the {@link Command} API.
+     */
+    private final EvaluationContext evaluation;
+    @Getter
+    private final long epochMinute;
+    /**
+     * Minutes since Monday 00:00, as used by {@link WeekBitmap}.
+     */
+    @Getter
+    private final int minuteOfWeek;
+    /**
+     * Minutes since 00:00.
+     */
+    @Getter
+    private final int minuteOfDay;
+    /**
+     * The ordinal of the {@link java.time.DayOfWeek}, 0 for Monday.
+     */
+    @Getter
+    private final int dayOfWeek;
+    @Getter
+    private final int dayOfMonth;
+    @Getter
+    private final boolean running;
+    /**
+     * Seconds from the launch time to the current time.
+     */
+    @Getter
+    private final long secondsSinceLaunch;
+
+    CommandContext(EvaluationContext evaluation) {
+        this.evaluation = evaluation;
+        long epochSecond = evaluation.currentDateTime.toEpochSecond();
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        epochMinute = Math.floorDiv(epochSecond, 60);
+        minuteOfDay = (int) (Math.floorMod(epochSecond, SECONDS_PER_DAY) / 60);
+        // 1970-01-01 was a Thursday
+        dayOfWeek = (int) Math.floorMod(epochDay + 3, 7);
+        minuteOfWeek = dayOfWeek * WeekBitmap.MINUTES_PER_DAY + minuteOfDay;
+        dayOfMonth = dayOfMonth(epochDay);
+        running = evaluation.isRunning;
+        secondsSinceLaunch = evaluation.launchDateTime == null
+                ? 0 : epochSecond - evaluation.launchDateTime.toEpochSecond();
+    }
+
+    /**
+     * Counts days in 400 year cycles starting in March, so that the leap day is the last day of a year.
+     */
+    private static int dayOfMonth(long epochDay) {
+        long days = epochDay + DAYS_0000_TO_1970;
+        long dayOfEra = days - Math.floorDiv(days, DAYS_PER_CYCLE) * DAYS_PER_CYCLE;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        return (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    }
+
+    EvaluationContext getEvaluation() {
+        return evaluation;
+    }
+}
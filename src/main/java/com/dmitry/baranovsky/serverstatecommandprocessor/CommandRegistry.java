@@ -0,0 +1,144 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.EventBus;
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ClassInfo;
+
+import java.lang.annotation.Annotation;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable table of all registered timetable commands.
+ * <p>
+ * The commands package is scanned only once per JVM, the resulting registry
+ * is shared by every command processor.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public final class CommandRegistry {
+    private static final String COMMAND_PACKAGE = "com.dmitry.baranovsky.serverstatecommandprocessor.commands";
+    private final Map<String, PrimitiveCommand> primaryCommands;
+    private final Map<String, Command> configCommands;
+
+    private CommandRegistry(Builder builder) {
+        primaryCommands = ImmutableMap.copyOf(builder.primaryCommands);
+        configCommands = ImmutableMap.copyOf(builder.configCommands);
+    }
+
+    /**
+     * Returns the registry of all commands found in the commands package.
+     * The package is scanned on the first call only.
+     *
+     * @return the shared command registry.
+     */
+    public static CommandRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Scans the given package for {@link CommandModule} classes and registers them.
+     *
+     * @param commandPackage the package containing the command classes.
+     * @return a new command registry.
+     */
+    public static CommandRegistry scan(String commandPackage) {
+        Builder builder = new Builder();
+        EventBus eventBus = new EventBus();
+        for (Class<?> aClass : lookForAnnotatedOn(commandPackage, CommandModule.class)) {
+            try {
+                eventBus.register(aClass.getDeclaredConstructor().newInstance());
+            } catch (Exception e) {
+                throw new IllegalStateException("Couldn't find public constructor for command class: "
+                        + aClass.getName(), e);
+            }
+        }
+        eventBus.post(builder);
+        return builder.build();
+    }
+
+    private static Set<Class<?>> lookForAnnotatedOn(String commandPackage, Class<? extends Annotation> annotation) {
+        return new ClassGraph()
+                .whitelistPackages(commandPackage)
+                .enableAnnotationInfo()
+                .scan()
+                .getAllClasses().stream().filter(classInfo -> classInfo.hasAnnotation(annotation.getName())).map(ClassInfo::loadClass)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Looks up a primary command.
+     *
+     * @param key the command key as seen in work time strings.
+     * @return the shared command instance or null if there is no such command.
+     */
+    public PrimitiveCommand getCommand(String key) {
+        return primaryCommands.get(key);
+    }
+
+    /**
+     * @return the keys of all primary commands.
+     */
+    public Set<String> getCommandKeys() {
+        return primaryCommands.keySet();
+    }
+
+    /**
+     * Looks up a configuration command.
+     *
+     * @param key the command key as seen in work time strings.
+     * @return the shared command instance or null if there is no such command.
+     */
+    public Command getConfigCommand(String key) {
+        return configCommands.get(key);
+    }
+
+    /**
+     * Collects command registrations before the registry is frozen.
+     * Posted to the {@code @Subscribe} register methods of all command modules.
+     */
+    public static final class Builder {
+        private final Map<String, PrimitiveCommand> primaryCommands = new HashMap<>();
+        private final Map<String, Command> configCommands = new HashMap<>();
+
+        /**
+         * Registers a timetable command.
+         *
+         * @param key     the command key as seen in work time strings.
+         * @param command the stateless command instance.
+         */
+        public void register(String key, PrimitiveCommand command) {
+            primaryCommands.put(key, command);
+        }
+
+        /**
+         * Registers a timetable command written for the evaluation context API.
+         *
+         * @param key     the command key as seen in work time strings.
+         * @param command the stateless command instance.
+         */
+        public void register(String key, Command command) {
+            primaryCommands.put(key, new PrimitiveCommand.Adapter(command));
+        }
+
+        /**
+         * Registers a configuration command.
+         *
+         * @param key     the command key as seen in work time strings.
+         * @param command the stateless command instance.
+         */
+        public void registerConfig(String key, Command command) {
+            configCommands.put(key, command);
+        }
+
+        public CommandRegistry build() {
+            return new CommandRegistry(this);
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final CommandRegistry INSTANCE = scan(COMMAND_PACKAGE);
+    }
+}
@@ -0,0 +1,437 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Pushes the decisions of subscribed servers whenever their action changes.
+ * <p>
+ * A subscription is evaluated once and then waits in a {@link TimingWheel} for its next transition,
+ * found by {@link ForecastProcessor}. The wheel is advanced every second and only the subscriptions
+ * that are due are evaluated again, so the work per tick depends on the amount of transitions
+ * and not on the amount of subscribed servers.
+ * <p>
+ * Like the forecast, the publisher expects the server to follow every decision: a "Start" sets
+ * the server state to running and the launch time to the time of the decision, a "Stop" sets it to stopped.
+ * The id of every event holds the time of the decision and the resulting state,
+ * so a client that reconnects with its last event id receives every transition it has missed.
+ * <p>
+ * Between transitions a subscription is woken up by the wheel for a heartbeat, so that idle proxies
+ * keep the connection open and a client that is gone is noticed and cancelled.
+ * Events are handed to a separate sender pool and delivered in order, one at a time per subscription,
+ * so a slow client never holds the subscription lock or an evaluation worker.
+ */
+@Component
+public class DecisionPublisher {
+    /**
+     * The period searched for the next transition, a subscription without transitions is checked again after it.
+     */
+    private static final long HORIZON_SECONDS = ForecastProcessor.MAX_HORIZON_DAYS * 86_400L;
+    private final ServerStateCommandProcessor processor;
+    private final ForecastProcessor forecastProcessor;
+    private final LongSupplier clock;
+    private final Executor executor;
+    private final Executor sender;
+    private final long heartbeatSeconds;
+    private final TimingWheel<Subscription> wheel;
+    private final ExecutorService workers;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService ticker;
+
+    /**
+     * The decision publisher constructor.
+     *
+     * @param processor         the processor evaluating the decisions.
+     * @param forecastProcessor the forecast finding the next transitions.
+     * @param parallelism       the amount of threads evaluating due subscriptions,
+     *                          0 to use one thread per available processor.
+     * @param sendThreads       the amount of threads writing events to the clients.
+     * @param heartbeatSeconds  the time without events after which a heartbeat is sent.
+     */
+    @Autowired
+    public DecisionPublisher(ServerStateCommandProcessor processor, ForecastProcessor forecastProcessor,
+                             @Value("${processor.publisher-parallelism:0}") int parallelism,
+                             @Value("${processor.publisher-send-threads:64}") int sendThreads,
+                             @Value("${processor.publisher-heartbeat-seconds:30}") long heartbeatSeconds) {
+        this.processor = processor;
+        this.forecastProcessor = forecastProcessor;
+        this.heartbeatSeconds = heartbeatSeconds;
+        clock = () -> System.currentTimeMillis() / 1000;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        workers = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("decision-publisher-%d").setDaemon(true).build());
+        executor = workers;
+        senders = Executors.newFixedThreadPool(sendThreads,
+                new ThreadFactoryBuilder().setNameFormat("decision-publisher-sender-%d").setDaemon(true).build());
+        sender = senders;
+        wheel = new TimingWheel<>(clock.getAsLong());
+        ticker = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("decision-publisher-ticker").setDaemon(true).build());
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A publisher that is only advanced by calling {@link #tick()}.
+     *
+     * @param clock            supplies the current time in epoch seconds.
+     * @param executor         runs the evaluations of due subscriptions and delivers the events.
+     * @param heartbeatSeconds the time without events after which a heartbeat is sent.
+     */
+    DecisionPublisher(ServerStateCommandProcessor processor, ForecastProcessor forecastProcessor,
+                      LongSupplier clock, Executor executor, long heartbeatSeconds) {
+        this.processor = processor;
+        this.forecastProcessor = forecastProcessor;
+        this.clock = clock;
+        this.executor = executor;
+        this.heartbeatSeconds = heartbeatSeconds;
+        sender = executor;
+        wheel = new TimingWheel<>(clock.getAsLong());
+        workers = null;
+        senders = null;
+        ticker = null;
+    }
+
+    /**
+     * Receives the events of a subscription.
+     */
+    public interface Listener {
+        /**
+         * Sends a decision.
+         *
+         * @param id       the event id, used as "Last-Event-ID" to resume the subscription.
+         * @param decision the JSON containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime"
+         *                 and "Time", the time of the decision in UTC.
+         * @throws IOException if the client is gone, which cancels the subscription.
+         */
+        void send(String id, Map<String, String> decision) throws IOException;
+
+        /**
+         * Sends a heartbeat that the client ignores.
+         *
+         * @throws IOException if the client is gone, which cancels the subscription.
+         */
+        void heartbeat() throws IOException;
+
+        /**
+         * Called when the subscription ends after an error.
+         */
+        void complete();
+    }
+
+    /**
+     * A subscribed server.
+     */
+    public final class Subscription {
+        private final Map<String, String> input;
+        private final Listener listener;
+        private boolean running;
+        /**
+         * The launch time in epoch seconds.
+         */
+        private long launchTime;
+        /**
+         * The time in epoch seconds from which the next transition is searched.
+         */
+        private long cursor;
+        private volatile boolean closed;
+        private volatile boolean cancelled;
+        private TimingWheel.Entry<Subscription> entry;
+        /**
+         * The events waiting for delivery, guarded by itself.
+         */
+        private final ArrayDeque<Event> outbox = new ArrayDeque<>();
+        private boolean delivering;
+
+        Subscription(Map<String, String> input, Listener listener) {
+            this.input = new HashMap<>(input);
+            this.listener = listener;
+        }
+
+        /**
+         * Ends the subscription, no events are sent once an event that is being sent has been written.
+         */
+        public void cancel() {
+            cancelled = true;
+            end();
+        }
+
+        private void end() {
+            synchronized (this) {
+                closed = true;
+                if (entry != null) {
+                    wheel.cancel(entry);
+                    entry = null;
+                }
+            }
+        }
+
+        /**
+         * @return true if the subscription has ended.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * Subscribes a server.
+     * <p>
+     * A new subscription receives the current decision first. A resumed subscription only receives
+     * the transitions after the given event, an unknown or outdated event id starts a new subscription.
+     *
+     * @param input       the JSON taken by {@link ServerStateCommandProcessor#run(Map)},
+     *                    the "Current Time" is replaced by the time of the publisher.
+     * @param lastEventId the id of the last event received by the client or null.
+     * @param listener    receives the events.
+     * @return the subscription, already closed if the input is invalid.
+     */
+    public Subscription subscribe(Map<String, String> input, String lastEventId, Listener listener) {
+        Subscription subscription = new Subscription(input == null ? new HashMap<>() : input, listener);
+        long now = clock.getAsLong();
+        synchronized (subscription) {
+            if (!resume(subscription, lastEventId, now)) {
+                Map<String, String> decision = decide(subscription, now);
+                send(subscription, decision, now);
+                if (decision.get("ErrorFlag").equals("True")) {
+                    close(subscription);
+                    return subscription;
+                }
+                String action = decision.get("Action");
+                subscription.cursor = action.equals(ServerStateCommandProcessor.Action.ON.name)
+                        || action.equals(ServerStateCommandProcessor.Action.OFF.name) ? now + 60 : now;
+            }
+            advance(subscription, now);
+        }
+        return subscription;
+    }
+
+    /**
+     * Fires the subscriptions that are due.
+     */
+    void tick() {
+        List<Subscription> due = new ArrayList<>();
+        wheel.advance(clock.getAsLong(), due::add);
+        // evaluated outside of the wheel lock, subscriptions lock themselves before scheduling
+        for (Subscription subscription : due) {
+            executor.execute(() -> {
+                synchronized (subscription) {
+                    subscription.entry = null;
+                    if (subscription.closed) {
+                        return;
+                    }
+                    long now = clock.getAsLong();
+                    if (now < subscription.cursor) {
+                        // woken up for a heartbeat before the next transition
+                        post(subscription, Listener::heartbeat);
+                        schedule(subscription, now);
+                    } else {
+                        advance(subscription, now);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the amount of subscriptions waiting for their next transition.
+     */
+    public int size() {
+        return wheel.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            workers.shutdownNow();
+            senders.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends every transition up to the given time and schedules the subscription at the next one.
+     */
+    private void advance(Subscription subscription, long now) {
+        while (!subscription.closed) {
+            Map<String, String> forecastInput = new HashMap<>(subscription.input);
+            forecastInput.put("Current Time", JsonResponseWriter.formatLocalTime(subscription.cursor));
+            forecastInput.put("Server State", subscription.running ? "running" : "stopped");
+            forecastInput.put("Launch Time", JsonResponseWriter.formatLocalTime(subscription.launchTime));
+            forecastInput.put("Transitions", "1");
+            forecastInput.put("Horizon Days", String.valueOf(ForecastProcessor.MAX_HORIZON_DAYS));
+            Map<String, Object> forecast = forecastProcessor.run(forecastInput);
+            if (forecast.get("ErrorFlag").equals("True")) {
+                send(subscription, errorDecision((String) forecast.get("ErrorMessage")), now);
+                close(subscription);
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            List<Map<String, String>> transitions = (List<Map<String, String>>) forecast.get("Transitions");
+            if (transitions.isEmpty()) {
+                // nothing changes within the horizon, the state stays the same until then
+                subscription.cursor += HORIZON_SECONDS;
+                schedule(subscription, now);
+                return;
+            }
+            Map<String, String> transition = transitions.get(0);
+            long time = TimestampParser.parse(transition.get("Time"));
+            if (time > now) {
+                subscription.cursor = time;
+                schedule(subscription, now);
+                return;
+            }
+            Map<String, String> decision = new HashMap<>(transition);
+            decision.put("ErrorFlag", "False");
+            decision.put("ErrorMessage", "");
+            apply(subscription, decision.get("Action"), time);
+            send(subscription, decision, time);
+            subscription.cursor = time + 60;
+        }
+    }
+
+    /**
+     * Schedules the subscription at its next transition or at its next heartbeat, whichever comes first.
+     */
+    private void schedule(Subscription subscription, long now) {
+        subscription.entry = wheel.schedule(Math.min(subscription.cursor, now + heartbeatSeconds), subscription);
+    }
+
+    /**
+     * Evaluates the subscribed server at the given time.
+     */
+    private Map<String, String> decide(Subscription subscription, long now) {
+        Map<String, String> decisionInput = new HashMap<>(subscription.input);
+        String time = JsonResponseWriter.formatLocalTime(now);
+        decisionInput.put("Current Time", time);
+        Map<String, String> decision = new HashMap<>(processor.run(decisionInput));
+        decision.put("Time", time);
+        if (decision.get("ErrorFlag").equals("False")) {
+            subscription.running = "running".equals(subscription.input.get("Server State"));
+            subscription.launchTime = TimestampParser.parse(subscription.input.get("Launch Time"));
+            apply(subscription, decision.get("Action"), now);
+        }
+        return decision;
+    }
+
+    /**
+     * Restores the state of the subscription from the id of the last received event.
+     *
+     * @return false if the id is missing, invalid or outdated.
+     */
+    private boolean resume(Subscription subscription, String lastEventId, long now) {
+        if (lastEventId == null) {
+            return false;
+        }
+        String[] parts = lastEventId.split(":");
+        if (parts.length != 3 || !parts[1].equals("0") && !parts[1].equals("1")) {
+            return false;
+        }
+        long time;
+        long launchTime;
+        try {
+            time = Long.parseLong(parts[0]);
+            launchTime = Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (time > now || now - time > HORIZON_SECONDS) {
+            return false;
+        }
+        subscription.running = parts[1].equals("1");
+        subscription.launchTime = launchTime;
+        subscription.cursor = time + 60;
+        return true;
+    }
+
+    private static void apply(Subscription subscription, String action, long time) {
+        if (action.equals(ServerStateCommandProcessor.Action.ON.name)) {
+            subscription.running = true;
+            subscription.launchTime = time;
+        } else if (action.equals(ServerStateCommandProcessor.Action.OFF.name)) {
+            subscription.running = false;
+        }
+    }
+
+    private void send(Subscription subscription, Map<String, String> decision, long time) {
+        String id = time + ":" + (subscription.running ? 1 : 0) + ":" + subscription.launchTime;
+        post(subscription, listener -> listener.send(id, decision));
+    }
+
+    private void close(Subscription subscription) {
+        subscription.end();
+        post(subscription, Listener::complete);
+    }
+
+    /**
+     * Queues an event of the subscription, the events are delivered in order on the sender pool.
+     */
+    private void post(Subscription subscription, Event event) {
+        synchronized (subscription.outbox) {
+            if (subscription.cancelled) {
+                return;
+            }
+            subscription.outbox.add(event);
+            if (subscription.delivering) {
+                return;
+            }
+            subscription.delivering = true;
+        }
+        sender.execute(() -> deliver(subscription));
+    }
+
+    /**
+     * Delivers the queued events of the subscription until the queue is empty, a failed delivery cancels it.
+     */
+    private static void deliver(Subscription subscription) {
+        while (true) {
+            Event event;
+            synchronized (subscription.outbox) {
+                event = subscription.cancelled ? null : subscription.outbox.poll();
+                if (event == null) {
+                    subscription.outbox.clear();
+                    subscription.delivering = false;
+                    return;
+                }
+            }
+            try {
+                event.deliver(subscription.listener);
+            } catch (IOException e) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * An event waiting in the outbox of a subscription.
+     */
+    private interface Event {
+        void deliver(Listener listener) throws IOException;
+    }
+
+    private static Map<String, String> errorDecision(String error) {
+        Map<String, String> outJSON = new HashMap<>();
+        outJSON.put("Action", "");
+        outJSON.put("Reason", "");
+        outJSON.put("ErrorFlag", "True");
+        outJSON.put("ErrorMessage", error);
+        outJSON.put("LocalTime", "error");
+        outJSON.put("Time", "");
+        return outJSON;
+    }
+}
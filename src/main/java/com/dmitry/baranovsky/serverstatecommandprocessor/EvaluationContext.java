@@ -0,0 +1,43 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.PatchCalendar;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The state of a single work time evaluation.
+ * <p>
+ * A new context is created for every processed input, so the command processor
+ * and the commands themselves stay immutable and can be shared between threads.
+ */
+public class EvaluationContext {
+    static final long NO_LOCAL_TIME = Long.MIN_VALUE;
+    boolean isRunning;
+    @Getter
+    ZonedDateTime currentDateTime;
+    @Setter
+    @Getter
+    private int UTCshift = 0;
+    @Getter
+    ZonedDateTime launchDateTime;
+    ZoneCache.Zone localTimeZone;
+    /**
+     * The current time in epoch seconds before any shift is applied.
+     */
+    long currentEpochSecond;
+    /**
+     * The local wall-clock time as epoch seconds of the same wall-clock time in UTC, or {@link #NO_LOCAL_TIME}.
+     */
+    long localDateTime = NO_LOCAL_TIME;
+    PatchCalendar patchCalendar = PatchCalendar.EMPTY;
+    String workTime;
+    String error;
+    ServerStateCommandProcessor.Action action;
+    String reason;
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+}
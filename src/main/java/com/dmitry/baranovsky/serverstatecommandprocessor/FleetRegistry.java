@@ -0,0 +1,296 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.PatchCalendar;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the schedules of registered servers so that polls only have to send the server state.
+ * <p>
+ * Server records are immutable and replaced as a whole, lookups never lock.
+ * A record only references its compiled schedule and interned time zone and patch time strings,
+ * servers with identical definitions share them. The amount of servers is limited.
+ */
+@Component
+public class FleetRegistry {
+    public static final long DEFAULT_MAX_SERVERS = 5_000_000;
+    private final ServerStateCommandProcessor processor;
+    @Getter
+    private final long maxServers;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Server> servers = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    /**
+     * Compiled schedules by work time string, kept as long as a server uses them.
+     */
+    private final Cache<String, CompiledSchedule> schedules = CacheBuilder.newBuilder().weakValues().build();
+    private final Interner<String> strings = Interners.newWeakInterner();
+
+    /**
+     * The fleet registry constructor.
+     *
+     * @param processor  the processor evaluating the servers.
+     * @param maxServers the maximum amount of registered servers.
+     */
+    @Autowired
+    public FleetRegistry(ServerStateCommandProcessor processor,
+                         @Value("${processor.fleet-max-servers:" + DEFAULT_MAX_SERVERS + "}") long maxServers) {
+        this(processor, maxServers, () -> System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @param clock supplies the current time in epoch seconds for polls that don't send it.
+     */
+    FleetRegistry(ServerStateCommandProcessor processor, long maxServers, LongSupplier clock) {
+        this.processor = processor;
+        this.maxServers = maxServers;
+        this.clock = clock;
+    }
+
+    /**
+     * A registered server.
+     */
+    @Getter
+    public static final class Server {
+        private final CompiledSchedule schedule;
+        private final String timeZone;
+        private final String patchTime;
+        /**
+         * The launch time in epoch seconds.
+         */
+        private final long launchTime;
+        private final boolean running;
+
+        Server(CompiledSchedule schedule, String timeZone, String patchTime, long launchTime, boolean running) {
+            this.schedule = schedule;
+            this.timeZone = timeZone;
+            this.patchTime = patchTime;
+            this.launchTime = launchTime;
+            this.running = running;
+        }
+
+        Server withRunning(boolean running) {
+            return new Server(schedule, timeZone, patchTime, launchTime, running);
+        }
+    }
+
+    /**
+     * Thrown when a server id is not registered.
+     */
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public static class UnknownServerException extends IllegalArgumentException {
+        private static final long serialVersionUID = 2270584630176313851L;
+
+        public UnknownServerException(String serverId) {
+            super("Unknown server: " + serverId);
+        }
+    }
+
+    /**
+     * Registers a server or replaces its record.
+     *
+     * @param serverId the server id.
+     * @param input    the JSON containing "Work Hours", "Time Zone", "Launch Time", "Server State" and
+     *                 optionally "Patch Time", validated like /process inputs.
+     * @return the JSON containing "ErrorFlag" and "ErrorMessage".
+     */
+    public Map<String, String> put(String serverId, Map<String, String> input) {
+        String workTime = input.get("Work Hours");
+        String timeZone = input.get("Time Zone");
+        String launchTime = input.get("Launch Time");
+        String serverState = input.get("Server State");
+        String patchTime = input.getOrDefault("Patch Time", "");
+        if (workTime == null || timeZone == null || launchTime == null || serverState == null || patchTime == null
+                || workTime.isEmpty() || timeZone.isEmpty() || launchTime.isEmpty() || serverState.isEmpty()) {
+            return status("Null argument");
+        }
+        try {
+            ZoneId.of(timeZone);
+        } catch (DateTimeException e) {
+            return status("Incorrect time zone:" + timeZone);
+        }
+        if (!serverState.equals("running") && !serverState.equals("stopped")) {
+            return status("Incorrect server state");
+        }
+        PatchCalendar patchCalendar = processor.getPatchCalendar(patchTime);
+        if (patchCalendar.isFailed()) {
+            return status(patchCalendar.getError());
+        }
+        long launchSeconds = TimestampParser.parse(launchTime);
+        if (launchSeconds == TimestampParser.INVALID) {
+            return status("Incorrect launch time: " + launchTime);
+        }
+        CompiledSchedule schedule = schedule(workTime);
+        if (schedule.isFailed()) {
+            return status(schedule.getError());
+        }
+        Server server = new Server(schedule, strings.intern(timeZone), strings.intern(patchTime),
+                launchSeconds, serverState.equals("running"));
+        boolean reserved = false;
+        if (!servers.containsKey(serverId)) {
+            if (size.incrementAndGet() > maxServers) {
+                size.decrementAndGet();
+                return status("Too many servers, the limit is " + maxServers);
+            }
+            reserved = true;
+        }
+        Server previous = servers.put(serverId, server);
+        if (previous != null && reserved) {
+            size.decrementAndGet();
+        } else if (previous == null && !reserved) {
+            size.incrementAndGet();
+        }
+        return status("");
+    }
+
+    /**
+     * @param serverId the server id.
+     * @return the JSON containing the "Work Hours", "Time Zone", "Patch Time", "Launch Time" and "Server State"
+     * of the server.
+     * @throws UnknownServerException if the server is not registered.
+     */
+    public Map<String, String> get(String serverId) {
+        Server server = lookUp(serverId);
+        Map<String, String> outJSON = new HashMap<>();
+        outJSON.put("Work Hours", server.schedule.getWorkTime());
+        outJSON.put("Time Zone", server.timeZone);
+        outJSON.put("Patch Time", server.patchTime);
+        outJSON.put("Launch Time", JsonResponseWriter.formatLocalTime(server.launchTime));
+        outJSON.put("Server State", server.running ? "running" : "stopped");
+        return outJSON;
+    }
+
+    /**
+     * Removes a server.
+     *
+     * @param serverId the server id.
+     * @return the JSON containing "ErrorFlag" and "ErrorMessage".
+     * @throws UnknownServerException if the server is not registered.
+     */
+    public Map<String, String> remove(String serverId) {
+        if (servers.remove(serverId) == null) {
+            throw new UnknownServerException(serverId);
+        }
+        size.decrementAndGet();
+        return status("");
+    }
+
+    /**
+     * Evaluates a registered server and writes the /process result JSON to the given stream.
+     *
+     * @param serverId the server id.
+     * @param input    the JSON optionally containing the "Server State", stored as the last known state,
+     *                 and the "Current Time", the time of the server clock if it is missing.
+     * @param output   the stream to write the JSON to, it is neither flushed nor closed.
+     * @throws UnknownServerException if the server is not registered.
+     * @throws IOException            if writing fails.
+     */
+    public void process(String serverId, Map<String, String> input, OutputStream output) throws IOException {
+        EvaluationContext context = evaluate(serverId, input);
+        long start = System.nanoTime();
+        JsonResponseWriter.writeResult(context, output);
+        processor.getMetrics().record(ProcessorMetrics.Phase.RESPONSE, System.nanoTime() - start);
+    }
+
+    /**
+     * Evaluates a registered server like /process evaluates a full input.
+     *
+     * @return the evaluated context holding either the action and reason or the error.
+     */
+    EvaluationContext evaluate(String serverId, Map<String, String> input) {
+        Server server = lookUp(serverId);
+        String serverState = input == null ? null : input.get("Server State");
+        String currentTime = input == null ? null : input.get("Current Time");
+        if (serverState != null && !serverState.isEmpty()) {
+            if (!serverState.equals("running") && !serverState.equals("stopped")) {
+                return ServerStateCommandProcessor.errorContext("Incorrect server state");
+            }
+            boolean running = serverState.equals("running");
+            if (running != server.running) {
+                server = servers.computeIfPresent(serverId, (id, current) -> current.withRunning(running));
+                if (server == null) {
+                    throw new UnknownServerException(serverId);
+                }
+            }
+        }
+        long currentSeconds = currentTime == null || currentTime.isEmpty()
+                ? clock.getAsLong() : TimestampParser.parse(currentTime);
+        if (currentSeconds == TimestampParser.INVALID) {
+            return ServerStateCommandProcessor.errorContext("Incorrect current time: " + currentTime);
+        }
+        CompiledSchedule schedule = server.schedule;
+        BinaryProtocol.Request request = new BinaryProtocol.Request(
+                server.running ? BinaryProtocol.RUNNING : BinaryProtocol.STOPPED, currentSeconds, server.launchTime,
+                schedule.getWorkTime(), server.timeZone, server.patchTime);
+        return processor.run(request, workTime -> schedule);
+    }
+
+    /**
+     * @return the amount of registered servers.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return the amount of distinct compiled schedules used by the registered servers.
+     */
+    public long scheduleCount() {
+        schedules.cleanUp();
+        return schedules.size();
+    }
+
+    Server getServer(String serverId) {
+        return servers.get(serverId);
+    }
+
+    private Server lookUp(String serverId) {
+        Server server = servers.get(serverId);
+        if (server == null) {
+            throw new UnknownServerException(serverId);
+        }
+        return server;
+    }
+
+    /**
+     * Returns the shared compiled schedule of the given work time string.
+     */
+    private CompiledSchedule schedule(String workTime) {
+        CompiledSchedule schedule = schedules.getIfPresent(workTime);
+        if (schedule != null) {
+            return schedule;
+        }
+        schedule = processor.getScheduleCache().get(workTime);
+        if (schedule.isFailed()) {
+            return schedule;
+        }
+        CompiledSchedule existing = schedules.asMap().putIfAbsent(workTime, schedule);
+        return existing != null ? existing : schedule;
+    }
+
+    private static Map<String, String> status(String error) {
+        Map<String, String> outJSON = new HashMap<>();
+        outJSON.put("ErrorFlag", error.isEmpty() ? "False" : "True");
+        outJSON.put("ErrorMessage", error);
+        return outJSON;
+    }
+}
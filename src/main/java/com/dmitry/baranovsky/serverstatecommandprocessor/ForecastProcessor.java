@@ -0,0 +1,374 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.AlwaysOnCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.DateTimeCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.IgnoreAllCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.IgnoreTimeCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.OutOfScheduledHoursCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.UpOnDemandCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.DayTimeNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.OutOfScheduledHoursNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.PatchCalendar;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.UpOnDemandNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.WeekBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+/**
+ * Forecasts the upcoming start and stop transitions of a server.
+ * <p>
+ * A stopped server is expected to start at the first moment the processor would return "Start",
+ * a running server to stop at the first moment it would return "Stop". The server state flips
+ * after every transition and a start sets the launch time used by [OSH n].
+ * <p>
+ * Transitions are found by jumping through the minute-of-week bitmaps of the compiled schedule,
+ * the patch time calendar and the [OSH n] deadline, separately for every period with constant
+ * daylight saving state of the time zone.
+ */
+@Component
+public class ForecastProcessor {
+    public static final int DEFAULT_TRANSITIONS = 10;
+    public static final int MAX_TRANSITIONS = 100;
+    public static final int DEFAULT_HORIZON_DAYS = 31;
+    public static final int MAX_HORIZON_DAYS = 366;
+    private final ServerStateCommandProcessor processor;
+
+    @Autowired
+    public ForecastProcessor(ServerStateCommandProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Forecasts the transitions for the given input.
+     *
+     * @param input the JSON taken by {@link ServerStateCommandProcessor#run(Map)}, optionally containing
+     *              "Transitions", the maximum amount of transitions and "Horizon Days", the forecast period.
+     * @return the JSON containing "ErrorFlag", "ErrorMessage", "Transitions", a list of JSONs
+     * containing "Action", "Time", "LocalTime" and "Reason", and "NextPatchTime", the time the current or next
+     * patch window starts at within {@link #MAX_HORIZON_DAYS} days, empty if there is none.
+     */
+    public Map<String, Object> run(Map<String, String> input) {
+        EvaluationContext context = new EvaluationContext();
+        if (input == null || !processor.readInput(context, input)) {
+            return error(input == null ? "Null argument" : context.error);
+        }
+        int count = readNumber(input.get("Transitions"), DEFAULT_TRANSITIONS, MAX_TRANSITIONS);
+        if (count < 0) {
+            return error("Incorrect transitions count: " + input.get("Transitions"));
+        }
+        int horizonDays = readNumber(input.get("Horizon Days"), DEFAULT_HORIZON_DAYS, MAX_HORIZON_DAYS);
+        if (horizonDays < 0) {
+            return error("Incorrect horizon: " + input.get("Horizon Days"));
+        }
+        Plan plan = plan(context);
+        if (plan == null) {
+            return error(context.error);
+        }
+        ZoneRules rules = context.localTimeZone.getRules();
+        Instant cursor = Instant.ofEpochSecond(context.currentEpochSecond);
+        Instant until = cursor.plus(Duration.ofDays(horizonDays));
+        boolean running = context.isRunning;
+        ZonedDateTime launch = context.launchDateTime;
+        List<Map<String, String>> transitions = new ArrayList<>();
+        while (transitions.size() < count) {
+            Instant next = nextTransition(plan, rules, running, launch, cursor, until);
+            if (next == null) {
+                break;
+            }
+            ZonedDateTime time = next.atZone(ServerStateCommandProcessor.UTC);
+            Map<String, String> decisionInput = new HashMap<>(input);
+            decisionInput.put("Current Time", time.format(ServerStateCommandProcessor.DATE_TIME_FORMATTER));
+            decisionInput.put("Server State", running ? "running" : "stopped");
+            decisionInput.put("Launch Time", launch.format(ServerStateCommandProcessor.DATE_TIME_FORMATTER));
+            Map<String, String> decision = processor.run(decisionInput);
+            Map<String, String> transition = new HashMap<>();
+            transition.put("Action", decision.get("Action"));
+            transition.put("Time", decisionInput.get("Current Time"));
+            transition.put("LocalTime", decision.get("LocalTime"));
+            transition.put("Reason", decision.get("Reason"));
+            transitions.add(transition);
+            running = !running;
+            if (running) {
+                launch = time;
+            }
+            cursor = next.plus(1, ChronoUnit.MINUTES);
+        }
+        Map<String, Object> outJSON = new HashMap<>();
+        outJSON.put("ErrorFlag", "False");
+        outJSON.put("ErrorMessage", "");
+        outJSON.put("Transitions", transitions);
+        Instant start = Instant.ofEpochSecond(context.currentEpochSecond);
+        Instant nextPatch = next(plan, rules, start, start.plus(Duration.ofDays(MAX_HORIZON_DAYS)),
+                plan::nextPatchStart);
+        String nextPatchTime = nextPatch == null ? "" : JsonResponseWriter.formatLocalTime(nextPatch.getEpochSecond());
+        outJSON.put("NextPatchTime", nextPatchTime);
+        return outJSON;
+    }
+
+    /**
+     * Compiles the schedule of a read input for transition searches.
+     *
+     * @param context the context the input has been read into.
+     * @return the plan, or null if the schedule can't be compiled or forecast, the error is stored in the context.
+     */
+    Plan plan(EvaluationContext context) {
+        CompiledSchedule schedule = processor.getScheduleCache().get(context.workTime);
+        if (schedule.isFailed()) {
+            context.error = schedule.getError();
+            return null;
+        }
+        for (CompiledSchedule.Bracket bracket : schedule.getBrackets()) {
+            if (!isSupported(bracket.getCommand())) {
+                context.error = "Forecast is not supported for command: " + bracket.getNode().getKeyword();
+                return null;
+            }
+        }
+        return new Plan(schedule, context.patchCalendar);
+    }
+
+    /**
+     * Finds the first moment in the given period at which the server changes its state.
+     *
+     * @param launch the launch time of a running server.
+     * @return the moment or null if there is none.
+     */
+    static Instant nextTransition(Plan plan, ZoneRules rules, boolean running, ZonedDateTime launch, Instant from,
+                                  Instant until) {
+        return next(plan, rules, from, until, running
+                ? (start, end) -> plan.nextStop(start, end, launch) : plan::nextStart);
+    }
+
+    /**
+     * Finds the first moment in the given period that the given search of the plan finds,
+     * e.g. the moment at which the server changes its state.
+     *
+     * @param finder searches a period of constant daylight saving state in the time the schedule is evaluated in.
+     * @return the moment or null if there is none.
+     */
+    private static Instant next(Plan plan, ZoneRules rules, Instant from, Instant until,
+                                BinaryOperator<ZonedDateTime> finder) {
+        Instant periodStart = from;
+        while (periodStart.isBefore(until)) {
+            ZoneOffsetTransition zoneTransition = rules.nextTransition(periodStart);
+            Instant periodEnd = zoneTransition == null || zoneTransition.getInstant().isAfter(until)
+                    ? until : zoneTransition.getInstant();
+            // the processor evaluates the schedule at UTC + 1h during daylight saving time + the UTC shift
+            long offset = plan.shift * 3600L + (rules.isDaylightSavings(periodStart) ? 3600 : 0);
+            ZonedDateTime effectiveStart = periodStart.plusSeconds(offset).atZone(ServerStateCommandProcessor.UTC);
+            ZonedDateTime effectiveEnd = periodEnd.plusSeconds(offset).atZone(ServerStateCommandProcessor.UTC);
+            ZonedDateTime found = finder.apply(effectiveStart, effectiveEnd);
+            if (found != null) {
+                return found.toInstant().minusSeconds(offset);
+            }
+            periodStart = periodEnd;
+        }
+        return null;
+    }
+
+    private static boolean isSupported(PrimitiveCommand command) {
+        return command instanceof DateTimeCommand || command instanceof AlwaysOnCommand
+                || command instanceof IgnoreAllCommand || command instanceof IgnoreTimeCommand
+                || command instanceof OutOfScheduledHoursCommand || command instanceof UpOnDemandCommand;
+    }
+
+    /**
+     * @return the number, the default value if it is not given or -1 if it is not in the 1 to max range.
+     */
+    private static int readNumber(String value, int defaultValue, int max) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            return number >= 1 && number <= max ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, Object> error(String error) {
+        Map<String, Object> outJSON = new HashMap<>();
+        outJSON.put("ErrorFlag", "True");
+        outJSON.put("ErrorMessage", error);
+        outJSON.put("Transitions", new ArrayList<>());
+        outJSON.put("NextPatchTime", "");
+        return outJSON;
+    }
+
+    /**
+     * The minutes of the week at which the processor returns "Start" or "Stop", derived from a schedule.
+     * All times are in the time the processor evaluates the schedule in.
+     */
+    static final class Plan {
+        private final int shift;
+        private final boolean ignoreAll;
+        private final boolean manual;
+        /**
+         * Minutes at which a stopped server is started.
+         */
+        private final BitSet startMinutes = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+        /**
+         * Minutes at which a running server is stopped.
+         */
+        private final BitSet stopMinutes = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+        /**
+         * Minutes at which a running server is stopped once [OSH n] has been exceeded.
+         */
+        private final BitSet outOfScheduleMinutes = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+        private int outOfScheduleHours = -1;
+        private final PatchCalendar patchCalendar;
+
+        Plan(CompiledSchedule schedule, PatchCalendar patchCalendar) {
+            shift = schedule.getUTCshift();
+            BitSet work = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+            BitSet starts = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+            BitSet ends = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+            // minutes at which a bracket reports work time, keeping a running server on
+            BitSet steadyWork = new BitSet(WeekBitmap.MINUTES_PER_WEEK);
+            boolean alwaysOn = false;
+            boolean ignoreAll = false;
+            boolean manual = false;
+            for (CompiledSchedule.Bracket bracket : schedule.getBrackets()) {
+                PrimitiveCommand command = bracket.getCommand();
+                if (command instanceof DateTimeCommand) {
+                    WeekBitmap bitmap = ((DayTimeNode) bracket.getNode()).getBitmap();
+                    BitSet bracketWork = bitmap.workSet();
+                    BitSet bracketStarts = bitmap.startSet();
+                    BitSet bracketEnds = bitmap.endSet();
+                    work.or(bracketWork);
+                    starts.or(bracketStarts);
+                    ends.or(bracketEnds);
+                    bracketWork.andNot(bracketStarts);
+                    bracketWork.andNot(bracketEnds);
+                    steadyWork.or(bracketWork);
+                } else if (command instanceof UpOnDemandCommand) {
+                    UpOnDemandNode node = (UpOnDemandNode) bracket.getNode();
+                    for (int day = 0; day < 7; day++) {
+                        stopMinutes.set(day * WeekBitmap.MINUTES_PER_DAY + node.getHour() * 60 + node.getMinute());
+                    }
+                } else if (command instanceof OutOfScheduledHoursCommand) {
+                    int hours = ((OutOfScheduledHoursNode) bracket.getNode()).getHours();
+                    if (outOfScheduleHours < 0 || hours < outOfScheduleHours) {
+                        outOfScheduleHours = hours;
+                    }
+                } else if (command instanceof AlwaysOnCommand) {
+                    alwaysOn = true;
+                } else if (command instanceof IgnoreAllCommand) {
+                    ignoreAll = true;
+                } else if (command instanceof IgnoreTimeCommand) {
+                    manual = true;
+                }
+            }
+            this.ignoreAll = ignoreAll;
+            this.manual = manual;
+            // stopped: any work time or 24h starts the server unless a bracket reports its end time
+            if (alwaysOn) {
+                startMinutes.set(0, WeekBitmap.MINUTES_PER_WEEK);
+            } else {
+                startMinutes.or(work);
+            }
+            startMinutes.andNot(ends);
+            // running: end times, [UOD] and [OSH] stop the server unless a bracket reports work or start time
+            BitSet keepRunning = steadyWork;
+            keepRunning.or(starts);
+            stopMinutes.or(ends);
+            stopMinutes.andNot(keepRunning);
+            outOfScheduleMinutes.set(0, WeekBitmap.MINUTES_PER_WEEK);
+            outOfScheduleMinutes.andNot(keepRunning);
+            this.patchCalendar = patchCalendar;
+        }
+
+        ZonedDateTime nextStart(ZonedDateTime from, ZonedDateTime until) {
+            if (ignoreAll) {
+                return null;
+            }
+            ZonedDateTime next = earliest(manual ? null : next(startMinutes, from), nextPatchTime(from, until));
+            return next != null && next.isBefore(until) ? next : null;
+        }
+
+        ZonedDateTime nextStop(ZonedDateTime from, ZonedDateTime until, ZonedDateTime launch) {
+            if (ignoreAll || manual) {
+                return null;
+            }
+            ZonedDateTime deadline = outOfScheduleHours < 0 ? null : launch.plusHours(outOfScheduleHours).plusSeconds(1);
+            ZonedDateTime cursor = from;
+            while (cursor.isBefore(until)) {
+                ZonedDateTime next = next(stopMinutes, cursor);
+                if (deadline != null) {
+                    next = earliest(next, next(outOfScheduleMinutes, deadline.isAfter(cursor) ? deadline : cursor));
+                }
+                if (next == null || !next.isBefore(until)) {
+                    return null;
+                }
+                if (!isPatchTime(next)) {
+                    return next;
+                }
+                // the patch time keeps the server running
+                cursor = next.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            }
+            return null;
+        }
+
+        /**
+         * @return the first moment from the given time that falls into one of the given minutes of the week.
+         */
+        private static ZonedDateTime next(BitSet minutes, ZonedDateTime from) {
+            int minute = WeekBitmap.minuteOfWeek(from);
+            int next = minutes.nextSetBit(minute);
+            if (next == minute) {
+                return from;
+            }
+            if (next < 0) {
+                next = minutes.nextSetBit(0);
+                if (next < 0) {
+                    return null;
+                }
+                next += WeekBitmap.MINUTES_PER_WEEK;
+            }
+            return from.truncatedTo(ChronoUnit.MINUTES).plusMinutes(next - minute);
+        }
+
+        private ZonedDateTime nextPatchTime(ZonedDateTime from, ZonedDateTime until) {
+            ZonedDateTime start = nextPatchStart(from, until);
+            return start != null && from.isAfter(start) ? from : start;
+        }
+
+        /**
+         * @return the start of the patch window containing the given time or of the next one before the end time.
+         */
+        ZonedDateTime nextPatchStart(ZonedDateTime from, ZonedDateTime until) {
+            long next = patchCalendar.next(Math.floorDiv(from.toEpochSecond(), 60));
+            if (next == PatchCalendar.NONE) {
+                return null;
+            }
+            ZonedDateTime start = Instant.ofEpochSecond(next * 60).atZone(ServerStateCommandProcessor.UTC);
+            return start.isBefore(until) ? start : null;
+        }
+
+        private boolean isPatchTime(ZonedDateTime dateTime) {
+            return patchCalendar.contains(dateTime.getDayOfMonth(), dateTime.getDayOfWeek().ordinal(),
+                    dateTime.getHour() * 60 + dateTime.getMinute());
+        }
+
+        private static ZonedDateTime earliest(ZonedDateTime first, ZonedDateTime second) {
+            if (first == null) {
+                return second;
+            }
+            return second == null || first.isBefore(second) ? first : second;
+        }
+    }
+}
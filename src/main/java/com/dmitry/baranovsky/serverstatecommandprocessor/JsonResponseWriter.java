@@ -0,0 +1,278 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes /process results as JSON straight from the evaluation context.
+ * <p>
+ * The output is byte for byte what Jackson writes for the result maps of the processor:
+ * the fields are in the iteration order of a {@link java.util.HashMap} holding them,
+ * strings are escaped the way Jackson escapes them and non-ASCII characters are written as UTF-8.
+ * No map, formatter or intermediate string is created per result.
+ */
+public final class JsonResponseWriter {
+    private static final byte[] ACTION = ascii("{\"Action\":");
+    private static final byte[] ERROR_FLAG_TRUE = ascii(",\"ErrorFlag\":\"True\",\"LocalTime\":");
+    private static final byte[] ERROR_FLAG_FALSE = ascii(",\"ErrorFlag\":\"False\",\"LocalTime\":");
+    private static final byte[] ERROR_MESSAGE = ascii(",\"ErrorMessage\":");
+    private static final byte[] REASON = ascii(",\"Reason\":");
+    private static final byte[] EMPTY = ascii("\"\"");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] NO_LOCAL_TIME = ascii("\"error\"");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+    private static final int LOCAL_TIME_LENGTH = 19;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_PER_CYCLE = 146_097;
+    private static final long DAYS_0000_TO_1970 = 719_468;
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Batches are written to the stream whenever this many bytes are buffered.
+     */
+    private static final int FLUSH_SIZE = 8192;
+
+    private JsonResponseWriter() {
+    }
+
+    /**
+     * Writes the JSON object of a single result.
+     *
+     * @param context the evaluated context.
+     * @param output  the stream to write to, it is neither flushed nor closed.
+     * @throws IOException if writing fails.
+     */
+    public static void writeResult(EvaluationContext context, OutputStream output) throws IOException {
+        Buffer buffer = new Buffer();
+        buffer.writeResult(context);
+        output.write(buffer.bytes, 0, buffer.size);
+    }
+
+    /**
+     * Writes the JSON array of the results of a batch.
+     *
+     * @param contexts the evaluated contexts.
+     * @param output   the stream to write to, it is neither flushed nor closed.
+     * @throws IOException if writing fails.
+     */
+    public static void writeResults(List<EvaluationContext> contexts, OutputStream output) throws IOException {
+        Buffer buffer = new Buffer();
+        buffer.writeByte('[');
+        for (int i = 0; i < contexts.size(); i++) {
+            if (i > 0) {
+                buffer.writeByte(',');
+            }
+            buffer.writeResult(contexts.get(i));
+            if (buffer.size >= FLUSH_SIZE) {
+                output.write(buffer.bytes, 0, buffer.size);
+                buffer.size = 0;
+            }
+        }
+        buffer.writeByte(']');
+        output.write(buffer.bytes, 0, buffer.size);
+    }
+
+    /**
+     * @param context the evaluated context.
+     * @return the JSON object of the result.
+     */
+    public static String toString(EvaluationContext context) {
+        Buffer buffer = new Buffer();
+        buffer.writeResult(context);
+        return new String(buffer.bytes, 0, buffer.size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Formats a local time as "MM/dd/uuuu HH:mm:ss".
+     *
+     * @param localDateTime the local wall-clock time as epoch seconds of the same wall-clock time in UTC.
+     * @return the formatted time.
+     */
+    static String formatLocalTime(long localDateTime) {
+        byte[] digits = new byte[LOCAL_TIME_LENGTH];
+        if (writeLocalTime(localDateTime, digits, 0)) {
+            return new String(digits, StandardCharsets.ISO_8859_1);
+        }
+        return LocalDateTime.ofEpochSecond(localDateTime, 0, ZoneOffset.UTC)
+                .format(ServerStateCommandProcessor.DATE_TIME_FORMATTER);
+    }
+
+    /**
+     * Writes the local time digits for years 0 to 9999, other years are signed or longer.
+     *
+     * @return false if the year is out of range and nothing was written.
+     */
+    private static boolean writeLocalTime(long localDateTime, byte[] target, int offset) {
+        long secondOfDay = Math.floorMod(localDateTime, SECONDS_PER_DAY);
+        // civil date from days, counting 400 year cycles starting in March
+        long days = Math.floorDiv(localDateTime, SECONDS_PER_DAY) + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(days, DAYS_PER_CYCLE);
+        long dayOfEra = days - era * DAYS_PER_CYCLE;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return false;
+        }
+        writeDigits(target, offset, month, 2);
+        target[offset + 2] = '/';
+        writeDigits(target, offset + 3, day, 2);
+        target[offset + 5] = '/';
+        writeDigits(target, offset + 6, (int) year, 4);
+        target[offset + 10] = ' ';
+        writeDigits(target, offset + 11, (int) (secondOfDay / 3600), 2);
+        target[offset + 13] = ':';
+        writeDigits(target, offset + 14, (int) (secondOfDay / 60 % 60), 2);
+        target[offset + 16] = ':';
+        writeDigits(target, offset + 17, (int) (secondOfDay % 60), 2);
+        return true;
+    }
+
+    private static void writeDigits(byte[] target, int offset, int value, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Buffer {
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int size;
+
+        void writeResult(EvaluationContext context) {
+            boolean error = context.error != null;
+            writeBytes(ACTION);
+            if (error) {
+                writeBytes(EMPTY);
+                writeBytes(ERROR_FLAG_TRUE);
+            } else {
+                writeString(context.action.name);
+                writeBytes(ERROR_FLAG_FALSE);
+            }
+            writeLocalTime(context.localDateTime);
+            writeBytes(ERROR_MESSAGE);
+            if (error) {
+                writeString(context.error);
+                writeBytes(REASON);
+                writeBytes(EMPTY);
+            } else {
+                writeBytes(EMPTY);
+                writeBytes(REASON);
+                writeString(context.reason);
+            }
+            writeByte('}');
+        }
+
+        void writeLocalTime(long localDateTime) {
+            if (localDateTime == EvaluationContext.NO_LOCAL_TIME) {
+                writeBytes(NO_LOCAL_TIME);
+                return;
+            }
+            ensureCapacity(LOCAL_TIME_LENGTH + 2);
+            bytes[size] = '"';
+            if (JsonResponseWriter.writeLocalTime(localDateTime, bytes, size + 1)) {
+                bytes[size + LOCAL_TIME_LENGTH + 1] = '"';
+                size += LOCAL_TIME_LENGTH + 2;
+            } else {
+                writeString(formatLocalTime(localDateTime));
+            }
+        }
+
+        /**
+         * Writes a quoted string, escaping quotes, backslashes and control characters like Jackson does.
+         * Unpaired surrogates, which Jackson refuses to write, are replaced by '?'.
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeBytes(NULL);
+                return;
+            }
+            int length = value.length();
+            // the longest encoding is a six byte escape per character
+            ensureCapacity(length * 6 + 2);
+            byte[] target = bytes;
+            int position = size;
+            target[position++] = '"';
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x80) {
+                    if (c == '"' || c == '\\') {
+                        target[position++] = '\\';
+                    }
+                    target[position++] = (byte) c;
+                } else if (c < 0x20) {
+                    target[position++] = '\\';
+                    switch (c) {
+                        case '\b':
+                            target[position++] = 'b';
+                            break;
+                        case '\t':
+                            target[position++] = 't';
+                            break;
+                        case '\n':
+                            target[position++] = 'n';
+                            break;
+                        case '\f':
+                            target[position++] = 'f';
+                            break;
+                        case '\r':
+                            target[position++] = 'r';
+                            break;
+                        default:
+                            target[position++] = 'u';
+                            target[position++] = '0';
+                            target[position++] = '0';
+                            target[position++] = HEX[c >> 4];
+                            target[position++] = HEX[c & 0xF];
+                    }
+                } else if (c < 0x800) {
+                    target[position++] = (byte) (0xC0 | c >> 6);
+                    target[position++] = (byte) (0x80 | c & 0x3F);
+                } else if (!Character.isSurrogate(c)) {
+                    target[position++] = (byte) (0xE0 | c >> 12);
+                    target[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    target[position++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    target[position++] = (byte) (0xF0 | codePoint >> 18);
+                    target[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    target[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    target[position++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    target[position++] = '?';
+                }
+            }
+            target[position++] = '"';
+            size = position;
+        }
+
+        void writeBytes(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int amount) {
+            if (size + amount > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + amount));
+            }
+        }
+    }
+}
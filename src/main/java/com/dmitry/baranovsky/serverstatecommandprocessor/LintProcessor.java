@@ -0,0 +1,122 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Validates many work time strings at once, e.g. before rolling out new schedules.
+ * <p>
+ * A work time string is only compiled, so the result depends neither on the current time nor on the server.
+ * Every distinct string is compiled once, the distinct strings are split into chunks compiled in parallel.
+ * The schedules are not added to the schedule cache, so validating a large set doesn't evict the schedules
+ * of running servers.
+ */
+@Component
+public class LintProcessor {
+    private final CommandRegistry registry;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * The lint processor constructor.
+     *
+     * @param registry    the registry to look up commands in.
+     * @param parallelism the amount of threads, 0 to use one thread per available processor.
+     */
+    @Autowired
+    public LintProcessor(CommandRegistry registry, @Value("${processor.lint-parallelism:0}") int parallelism) {
+        this.registry = registry;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(this.parallelism,
+                new ThreadFactoryBuilder().setNameFormat("lint-processor-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Validates the given work time strings.
+     *
+     * @param workTimes the work time strings.
+     * @return the JSONs containing "ErrorFlag", "ErrorMessage", "ErrorCode", the name of the {@link ScheduleError},
+     * "ErrorIndex", the index of the command containing the error, and "ErrorOffset", the position of the error
+     * in the work time string, in the order of the work time strings. The code, index and offset are empty
+     * for valid strings and the index and offset are empty for errors that don't belong to a command.
+     */
+    public List<Map<String, String>> run(List<String> workTimes) {
+        Map<String, Map<String, String>> results = new HashMap<>();
+        for (String workTime : workTimes) {
+            if (workTime != null) {
+                results.put(workTime, null);
+            }
+        }
+        List<String> distinct = new ArrayList<>(results.keySet());
+        @SuppressWarnings("unchecked")
+        Map<String, String>[] distinctResults = new Map[distinct.size()];
+        int chunkSize = Math.max(1, (distinct.size() + parallelism - 1) / parallelism);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int chunkStart = 0; chunkStart < distinct.size(); chunkStart += chunkSize) {
+            int start = chunkStart;
+            int end = Math.min(distinct.size(), chunkStart + chunkSize);
+            chunks.add(CompletableFuture.runAsync(() -> {
+                for (int i = start; i < end; i++) {
+                    distinctResults[i] = lint(distinct.get(i));
+                }
+            }, executor));
+        }
+        BatchProcessor.await(CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])));
+        for (int i = 0; i < distinctResults.length; i++) {
+            results.put(distinct.get(i), distinctResults[i]);
+        }
+        Map<String, String> nullResult = result(ScheduleError.EMPTY, "Null argument", -1, -1);
+        List<Map<String, String>> outJSON = new ArrayList<>(workTimes.size());
+        for (String workTime : workTimes) {
+            outJSON.add(new HashMap<>(workTime == null ? nullResult : results.get(workTime)));
+        }
+        return outJSON;
+    }
+
+    /**
+     * Validates a single work time string.
+     */
+    Map<String, String> lint(String workTime) {
+        if (workTime.isEmpty()) {
+            return result(ScheduleError.EMPTY, "Null argument", -1, -1);
+        }
+        CompiledSchedule schedule = CompiledSchedule.compile(registry, workTime);
+        if (schedule.isFailed()) {
+            return result(schedule.getErrorCode(), schedule.getError(), schedule.getErrorIndex(),
+                    schedule.getErrorOffset());
+        }
+        if (schedule.getBrackets().isEmpty()) {
+            // only configuration commands, every evaluation would fail
+            return result(ScheduleError.NO_RESULT, "Could not calculate result: " + workTime, -1, -1);
+        }
+        return result(null, "", -1, -1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Map<String, String> result(ScheduleError code, String error, int index, int offset) {
+        Map<String, String> outJSON = new HashMap<>();
+        outJSON.put("ErrorFlag", code == null ? "False" : "True");
+        outJSON.put("ErrorMessage", error);
+        outJSON.put("ErrorCode", code == null ? "" : code.name());
+        outJSON.put("ErrorIndex", index < 0 ? "" : String.valueOf(index));
+        outJSON.put("ErrorOffset", offset < 0 ? "" : String.valueOf(offset));
+        return outJSON;
+    }
+}
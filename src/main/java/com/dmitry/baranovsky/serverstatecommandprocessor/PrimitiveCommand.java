@@ -0,0 +1,50 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
+
+/**
+ * Base class of timetable commands that read the evaluation as plain numbers.
+ * <p>
+ * Like {@link Command}s they are stateless singletons shared by all processors.
+ * Commands extending {@link Command} are still accepted by the registry and adapted to this class.
+ */
+public abstract class PrimitiveCommand {
+
+    /**
+     * Executes the command
+     * The arguments of built-in commands are validated by the parser,
+     * other commands can check {@link ScheduleNode#getArgument()} themselves.
+     *
+     * @param context the time and server state of the current evaluation
+     * @param node    the parsed command with its arguments
+     * @return a Result enum containing errors if needed
+     */
+    public abstract Result execute(CommandContext context, ScheduleNode node);
+
+    /**
+     * The action of highest {@link ServerStateCommandProcessor.Action#precedence} this command can return,
+     * so that commands which can't change the result are not executed.
+     *
+     * @return the action, {@link ServerStateCommandProcessor.Action#ERROR} if the command may fail,
+     * which makes every command of the schedule run in order.
+     */
+    public ServerStateCommandProcessor.Action getHighestAction() {
+        return ServerStateCommandProcessor.Action.ERROR;
+    }
+
+    /**
+     * Runs a {@link Command} written for the evaluation context API.
+     */
+    static final class Adapter extends PrimitiveCommand {
+        private final Command command;
+
+        Adapter(Command command) {
+            this.command = command;
+        }
+
+        @Override
+        public Result execute(CommandContext context, ScheduleNode node) {
+            return command.execute(context.getEvaluation(), node);
+        }
+    }
+}
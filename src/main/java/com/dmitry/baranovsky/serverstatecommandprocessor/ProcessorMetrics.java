@@ -0,0 +1,143 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers of a command processor.
+ * <p>
+ * Every evaluation records the time spent in each phase and in each primary command,
+ * the resulting action or the kind of error. Values are accumulated in {@link LongAdder}s
+ * so that request threads don't contend on them, {@link ProcessorMetricsBinder} publishes them.
+ */
+public final class ProcessorMetrics {
+    private final Stats[] phases = new Stats[Phase.values().length];
+    private final Map<String, Stats> commands;
+    private final LongAdder[] actions = new LongAdder[ServerStateCommandProcessor.Action.values().length];
+    private final LongAdder[] errors = new LongAdder[ErrorKind.values().length];
+
+    /**
+     * The phases of an evaluation.
+     */
+    public enum Phase {
+        READ_INPUT("read-input"),
+        SCHEDULE("schedule"),
+        COMMANDS("commands"),
+        CALCULATE_RESULT("calculate-result"),
+        RESPONSE("response");
+        @Getter
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * The phase an evaluation failed in.
+     */
+    public enum ErrorKind {
+        INPUT("input"),
+        SCHEDULE("schedule"),
+        COMMAND("command"),
+        RESULT("result");
+        @Getter
+        private final String tag;
+
+        ErrorKind(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * The amount and total duration of an operation.
+     */
+    public static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        void record(long nanos, int amount) {
+            count.add(amount);
+            totalNanos.add(nanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+    }
+
+    /**
+     * @param commandKeys the keys of all primary commands that can be executed.
+     */
+    public ProcessorMetrics(Collection<String> commandKeys) {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Stats();
+        }
+        ImmutableMap.Builder<String, Stats> builder = ImmutableMap.builder();
+        for (String key : commandKeys) {
+            builder.put(key, new Stats());
+        }
+        commands = builder.build();
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = new LongAdder();
+        }
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+    }
+
+    void record(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    void record(Phase phase, long nanos, int amount) {
+        phases[phase.ordinal()].record(nanos, amount);
+    }
+
+    void recordCommand(String key, long nanos) {
+        Stats stats = commands.get(key);
+        if (stats != null) {
+            stats.record(nanos);
+        }
+    }
+
+    void recordAction(ServerStateCommandProcessor.Action action) {
+        actions[action.ordinal()].increment();
+    }
+
+    void recordError(ErrorKind kind) {
+        errors[kind.ordinal()].increment();
+    }
+
+    public Stats getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * @return the stats of every primary command by command key.
+     */
+    public Map<String, Stats> getCommands() {
+        return commands;
+    }
+
+    public long actionCount(ServerStateCommandProcessor.Action action) {
+        return actions[action.ordinal()].sum();
+    }
+
+    public long errorCount(ErrorKind kind) {
+        return errors[kind.ordinal()].sum();
+    }
+}
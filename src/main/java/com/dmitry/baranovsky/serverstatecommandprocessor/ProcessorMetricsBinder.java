@@ -0,0 +1,60 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@link ProcessorMetrics} of the command processor to Micrometer.
+ * <p>
+ * The meters read the accumulated values when they are scraped, evaluations only touch the counters.
+ * They are available under /actuator/metrics as processor.phase, processor.command,
+ * processor.actions and processor.errors.
+ */
+@Component
+public class ProcessorMetricsBinder implements MeterBinder {
+    private final ServerStateCommandProcessor processor;
+
+    @Autowired
+    public ProcessorMetricsBinder(ServerStateCommandProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ProcessorMetrics metrics = processor.getMetrics();
+        for (ProcessorMetrics.Phase phase : ProcessorMetrics.Phase.values()) {
+            FunctionTimer.builder("processor.phase", metrics.getPhase(phase),
+                    ProcessorMetrics.Stats::count, ProcessorMetrics.Stats::totalNanos, TimeUnit.NANOSECONDS)
+                    .tag("phase", phase.getTag())
+                    .description("Time spent in the phases of /process evaluations")
+                    .register(registry);
+        }
+        metrics.getCommands().forEach((key, stats) ->
+                FunctionTimer.builder("processor.command", stats,
+                        ProcessorMetrics.Stats::count, ProcessorMetrics.Stats::totalNanos, TimeUnit.NANOSECONDS)
+                        .tag("command", key)
+                        .description("Time spent executing primary commands")
+                        .register(registry));
+        for (ServerStateCommandProcessor.Action action : ServerStateCommandProcessor.Action.values()) {
+            if (action == ServerStateCommandProcessor.Action.ERROR) {
+                continue;
+            }
+            FunctionCounter.builder("processor.actions", metrics, m -> m.actionCount(action))
+                    .tag("action", action.name())
+                    .description("Evaluations by resulting action")
+                    .register(registry);
+        }
+        for (ProcessorMetrics.ErrorKind kind : ProcessorMetrics.ErrorKind.values()) {
+            FunctionCounter.builder("processor.errors", metrics, m -> m.errorCount(kind))
+                    .tag("kind", kind.getTag())
+                    .description("Evaluations that failed by the phase they failed in")
+                    .register(registry);
+        }
+    }
+}
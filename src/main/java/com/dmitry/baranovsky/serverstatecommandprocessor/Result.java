@@ -4,6 +4,8 @@ import lombok.Getter;
 
 /**
  * An object containing most of the result information.
+ * <p>
+ * The built-in commands return shared constant results, so results returned by commands must not be modified.
  */
 public class Result {
     @Getter
@@ -1,108 +1,93 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor;
 
-import com.dmitry.baranovsky.serverstatecommandprocessor.commands.DateTimeCommand;
-import com.google.common.eventbus.EventBus;
-import io.github.classgraph.ClassGraph;
-import io.github.classgraph.ClassInfo;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.PatchCalendar;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleCache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import lombok.Getter;
-import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
-import java.lang.annotation.Annotation;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 /**
  * Class for processing the work time commands.
  * <p>
- * Registers all commands and then processes given work time strings.
+ * Looks up commands in the shared command registry and processes given work time strings.
+ * Work time strings are compiled once and kept in a schedule cache.
+ * The processor holds no per-call state, a single instance serves all request threads.
  */
 @SpringBootApplication
-@SuppressWarnings("UnstableApiUsage")
 public class ServerStateCommandProcessor {
-    private static final String COMMAND_PACKAGE = "com.dmitry.baranovsky.serverstatecommandprocessor.commands";
-    private static final String COMMAND_SPLIT_PATTERN = "]";
-    private static final String ARGUMENT_SPLIT_PATTERN = "[\\s+,-]";
-    private static final String SERVER_STATE_REGEX = "^(running|stopped)$";
-    private static final String TIME_REGEX = "^(\\d+)/(\\d+)/(\\d+)" +
-            " ([0-9]|0[0-9]|1[0-9]|2[0-3]):([0-5][0-9]):([0-5][0-9])$";
-    private static final String PATCH_TIME_REGEX =
-            "^\\[([1-5]) (Mon|Tue|Wed|Thu|Fri|Sat|Sun)" +
-                    " ([0-9]|0[0-9]|1[0-9]|2[0-3]):([0-5][0-9])\\]$";
-    private static final ZoneId UTC = ZoneId.of("UTC");
-    private Map<String, Class<?>> PRIMARY_MAP = new HashMap<>();
-    private Map<String, Class<?>> CONFIG_MAP = new HashMap<>();
-    private boolean isRunning;
-    @Getter
-    private ZonedDateTime currentDateTime;
-    @Setter
+    /**
+     * The amount of parsed patch time strings kept, there are few distinct ones.
+     */
+    static final long PATCH_CALENDAR_CACHE_SIZE = 1000;
+    static final ZoneId UTC = ZoneId.of("UTC");
+    static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss");
     @Getter
-    private int UTCshift = 0;
+    private final ScheduleCache scheduleCache;
     @Getter
-    private ZonedDateTime launchDateTime;
-    private ZoneId localTimeZone;
-    private ZonedDateTime localDateTime;
-    private String patchTime;
-    private String workTime;
-    private String error;
-
-    public boolean isRunning() {
-        return isRunning;
-    }
+    private final ProcessorMetrics metrics;
+    private final ZoneCache zoneCache = new ZoneCache(ZoneCache.DEFAULT_SIZE);
+    private final LoadingCache<String, PatchCalendar> patchCalendars = CacheBuilder.newBuilder()
+            .maximumSize(PATCH_CALENDAR_CACHE_SIZE)
+            .build(CacheLoader.from(PatchCalendar::compile));
 
     /**
      * The command processor constructor.
-     * Registers all commands.
+     * Uses the default command registry and schedule cache size.
      */
     public ServerStateCommandProcessor() {
-        Set<Class<?>> commands = lookForAnnotatedOn(CommandModule.class);
-        EventBus eventBus = new EventBus();
-        for (Class<?> aClass : commands) {
-            try {
-                eventBus.register(aClass.getDeclaredConstructor(ServerStateCommandProcessor.class).newInstance(this));
-            } catch (Exception e) {
-                error = "Couldn't find public constructor for command class: " + aClass.getName();
-            }
-        }
-        eventBus.post(this);
+        this(ScheduleCache.DEFAULT_SIZE);
     }
 
     /**
-     * Registers a timetable command in this processor.
+     * The command processor constructor.
+     * Uses the default command registry.
      *
-     * @param key         the command key as seen in work time strings.
-     * @param commandType the command implementation class.
+     * @param scheduleCacheSize the maximum amount of compiled schedules to keep.
      */
-    public void register(String key, Class<?> commandType) {
-        PRIMARY_MAP.put(key, commandType);
+    @Autowired
+    public ServerStateCommandProcessor(
+            @Value("${processor.schedule-cache-size:" + ScheduleCache.DEFAULT_SIZE + "}") long scheduleCacheSize) {
+        this(CommandRegistry.getDefault(), scheduleCacheSize);
     }
 
     /**
-     * Registers a configuration command in this processor.
+     * The command processor constructor.
      *
-     * @param key         the command key as seen in work time strings.
-     * @param commandType the command implementation class.
+     * @param registry          the registry to look up commands in.
+     * @param scheduleCacheSize the maximum amount of compiled schedules to keep.
      */
-    public void registerConfig(String key, Class<?> commandType) {
-        CONFIG_MAP.put(key, commandType);
+    public ServerStateCommandProcessor(CommandRegistry registry, long scheduleCacheSize) {
+        scheduleCache = new ScheduleCache(registry, scheduleCacheSize);
+        metrics = new ProcessorMetrics(registry.getCommandKeys());
     }
 
-    private Set<Class<?>> lookForAnnotatedOn(Class<? extends Annotation> annotation) {
-        return new ClassGraph()
-                .whitelistPackages(COMMAND_PACKAGE)
-                .enableAnnotationInfo()
-                .scan()
-                .getAllClasses().stream().filter(classInfo -> classInfo.hasAnnotation(annotation.getName())).map(ClassInfo::loadClass)
-                .collect(Collectors.toSet());
+    /**
+     * Exposes the shared command registry so that the commands package is scanned at startup.
+     *
+     * @return the default command registry.
+     */
+    @Bean
+    public CommandRegistry commandRegistry() {
+        return CommandRegistry.getDefault();
     }
 
     public static void main(String[] args) {
@@ -115,20 +100,117 @@ public class ServerStateCommandProcessor {
      * @return the JSON represented as a Map<\String, String>.
      */
     public Map<String, String> run(Map<String, String> inputJSON) {
+        return run(inputJSON, scheduleCache::get);
+    }
+
+    /**
+     * Processes the given workTime String using provided time arguments.
+     *
+     * @param schedules the lookup for compiled work time strings.
+     * @return the JSON represented as a Map<\String, String>.
+     */
+    public Map<String, String> run(Map<String, String> inputJSON, Function<String, CompiledSchedule> schedules) {
+        EvaluationContext context = evaluate(inputJSON, schedules);
+        long start = System.nanoTime();
+        Map<String, String> outJSON = returnJSONString(context);
+        metrics.record(ProcessorMetrics.Phase.RESPONSE, System.nanoTime() - start);
+        return outJSON;
+    }
+
+    /**
+     * Processes the given workTime String using provided time arguments
+     * and writes the result JSON to the given stream.
+     * The written JSON is the same as the serialized result of {@link #run(Map)}.
+     *
+     * @param output the stream to write the JSON to, it is neither flushed nor closed.
+     * @throws IOException if writing fails.
+     */
+    public void run(Map<String, String> inputJSON, OutputStream output) throws IOException {
+        EvaluationContext context = evaluate(inputJSON, scheduleCache::get);
+        long start = System.nanoTime();
+        JsonResponseWriter.writeResult(context, output);
+        metrics.record(ProcessorMetrics.Phase.RESPONSE, System.nanoTime() - start);
+    }
+
+    /**
+     * Processes a JSON input without creating the result JSON.
+     *
+     * @param schedules the lookup for compiled work time strings.
+     * @return the evaluated context holding either the action and reason or the error.
+     */
+    EvaluationContext evaluate(Map<String, String> inputJSON, Function<String, CompiledSchedule> schedules) {
+        EvaluationContext context = new EvaluationContext();
         //reading input
-        if (!readInput(inputJSON)) {
-            return returnJSONString(error);
+        if (inputJSON == null) {
+            context.error = "Null argument";
+            metrics.recordError(ProcessorMetrics.ErrorKind.INPUT);
+        } else {
+            long start = System.nanoTime();
+            boolean valid = readInput(context, inputJSON);
+            metrics.record(ProcessorMetrics.Phase.READ_INPUT, System.nanoTime() - start);
+            if (valid) {
+                evaluate(context, schedules);
+            } else {
+                metrics.recordError(ProcessorMetrics.ErrorKind.INPUT);
+            }
         }
+        return context;
+    }
+
+    /**
+     * Processes a binary protocol input like {@link #run(Map, Function)} processes a JSON input.
+     *
+     * @param input     the decoded input.
+     * @param schedules the lookup for compiled work time strings.
+     * @return the evaluated context holding either the action and reason or the error.
+     */
+    EvaluationContext run(BinaryProtocol.Request input, Function<String, CompiledSchedule> schedules) {
+        EvaluationContext context = new EvaluationContext();
+        long start = System.nanoTime();
+        boolean valid = readInput(context, input);
+        metrics.record(ProcessorMetrics.Phase.READ_INPUT, System.nanoTime() - start);
+        if (valid) {
+            evaluate(context, schedules);
+        } else {
+            metrics.recordError(ProcessorMetrics.ErrorKind.INPUT);
+        }
+        return context;
+    }
+
+    private void evaluate(EvaluationContext context, Function<String, CompiledSchedule> schedules) {
         //Command processing
-        Result[] result = processCommands(Utilities.splitArguments(workTime, COMMAND_SPLIT_PATTERN));
+        long start = System.nanoTime();
+        CompiledSchedule schedule = schedules.apply(context.workTime);
+        long compiled = System.nanoTime();
+        metrics.record(ProcessorMetrics.Phase.SCHEDULE, compiled - start);
+        if (schedule.isFailed()) {
+            context.error = schedule.getError();
+            metrics.recordError(ProcessorMetrics.ErrorKind.SCHEDULE);
+            return;
+        }
+        Result[] result = processPrioritizedCommands(context, schedule);
+        long executed = System.nanoTime();
+        metrics.record(ProcessorMetrics.Phase.COMMANDS, executed - compiled);
         if (result == null) {
-            return returnJSONString(error);
+            metrics.recordError(ProcessorMetrics.ErrorKind.COMMAND);
+            return;
         }
         //result calculation
-        return calculateResult(result);
+        calculateResult(context, result);
+        metrics.record(ProcessorMetrics.Phase.CALCULATE_RESULT, System.nanoTime() - executed);
+        if (context.error != null) {
+            metrics.recordError(ProcessorMetrics.ErrorKind.RESULT);
+        } else {
+            metrics.recordAction(context.action);
+        }
     }
 
-    private boolean readInput(Map<String, String> input) {
+    /**
+     * Reads and validates the input JSON into the given context.
+     *
+     * @return false if the input is invalid, the error is stored in the context.
+     */
+    boolean readInput(EvaluationContext context, Map<String, String> input) {
         String workTime = input.get("Work Hours");
         String currentTime = input.get("Current Time");
         String launchTime = input.get("Launch Time");
@@ -136,136 +218,206 @@ public class ServerStateCommandProcessor {
         String serverState = input.get("Server State");
         String patchTime = input.get("Patch Time");
 
-        if (workTime.isEmpty() || launchTime.isEmpty() || timeZone.isEmpty() || serverState.isEmpty()) {
-            error = "Null argument";
+        if (workTime == null || currentTime == null || launchTime == null || timeZone == null || serverState == null
+                || workTime.isEmpty() || launchTime.isEmpty() || timeZone.isEmpty() || serverState.isEmpty()) {
+            context.error = "Null argument";
             return false;
         }
-        this.workTime = workTime;
-        try {
-            localTimeZone = ZoneId.of(timeZone);
-        } catch (Exception e) {
-            error = "Incorrect time zone:" + timeZone;
+        context.workTime = workTime;
+        if (!readTimeZone(context, timeZone)) {
             return false;
         }
-        if (!Pattern.matches(SERVER_STATE_REGEX, serverState)) {
-            error = "Incorrect server state";
-            return false;
+        if (serverState.equals("running") || serverState.equals("stopped")) {
+            context.isRunning = serverState.equals("running");
         } else {
-            Matcher matcher = Pattern.compile(SERVER_STATE_REGEX).matcher(serverState);
-            if (matcher.matches()) {
-                isRunning = matcher.group(1).equals("running");
-            }
+            context.error = "Incorrect server state";
+            return false;
         }
-        if (!Pattern.matches(PATCH_TIME_REGEX, patchTime) && !patchTime.isEmpty()) {
-            error = "Incorrect patch time";
+        if (!readPatchTime(context, patchTime == null ? "" : patchTime)) {
             return false;
         }
-        this.patchTime = patchTime;
-        if (!Pattern.matches(TIME_REGEX, launchTime)) {
-            error = "Incorrect launch time: " + launchTime;
+        long launchSeconds = TimestampParser.parse(launchTime);
+        if (launchSeconds == TimestampParser.INVALID) {
+            context.error = "Incorrect launch time: " + launchTime;
             return false;
-        } else {
-            Matcher matcher = Pattern.compile(TIME_REGEX).matcher(launchTime);
-            if (matcher.matches()) {
-                int[] matches = new int[6];
-                for (int i = 0; i < 6; i++) {
-                    matches[i] = Integer.parseInt(matcher.group(1 + i));
-                }
-                try {
-                    launchDateTime = ZonedDateTime.of(matches[2], matches[0], matches[1],
-                            matches[3], matches[4], matches[5], 0, UTC);
-                } catch (DateTimeException e) {
-                    error = "Incorrect launch time: " + launchTime;
-                    return false;
-                }
-            }
         }
-        if (!Pattern.matches(TIME_REGEX, currentTime)) {
-            error = "Incorrect current time: " + currentTime;
+        context.launchDateTime = Instant.ofEpochSecond(launchSeconds).atZone(UTC);
+        long currentSeconds = TimestampParser.parse(currentTime);
+        if (currentSeconds == TimestampParser.INVALID) {
+            context.error = "Incorrect current time: " + currentTime;
             return false;
-        } else {
-            Matcher matcher = Pattern.compile(TIME_REGEX).matcher(currentTime);//need to check date
-            if (matcher.matches()) {
-                int[] matches = new int[6];
-                for (int i = 0; i < 6; i++) {
-                    matches[i] = Integer.parseInt(matcher.group(1 + i));
-                }
-                try {
-                    currentDateTime = ZonedDateTime.of(matches[2], matches[0], matches[1],
-                            matches[3], matches[4], matches[5], 0, UTC);
-                } catch (DateTimeException e) {
-                    error = "Incorrect current time: " + currentTime;
-                    return false;
-                }
-            }
         }
-        if (currentDateTime == null || localTimeZone == null) {
-            error = "Null main arguments";
+        context.currentDateTime = Instant.ofEpochSecond(currentSeconds).atZone(UTC);
+        return readLocalTime(context);
+    }
+
+    /**
+     * Reads and validates a binary protocol input into the given context.
+     * Applies the same checks and error messages as the JSON input.
+     *
+     * @return false if the input is invalid, the error is stored in the context.
+     */
+    boolean readInput(EvaluationContext context, BinaryProtocol.Request input) {
+        if (input.getWorkTime().isEmpty() || input.getTimeZone().isEmpty()) {
+            context.error = "Null argument";
+            return false;
+        }
+        context.workTime = input.getWorkTime();
+        if (!readTimeZone(context, input.getTimeZone())) {
+            return false;
+        }
+        if (input.getServerState() != BinaryProtocol.STOPPED && input.getServerState() != BinaryProtocol.RUNNING) {
+            context.error = "Incorrect server state";
             return false;
         }
-        localDateTime = currentDateTime.withZoneSameInstant(localTimeZone);
-        if (localTimeZone.getRules().isDaylightSavings(currentDateTime.toInstant())) {
-            currentDateTime = currentDateTime.plusHours(1);
+        context.isRunning = input.getServerState() == BinaryProtocol.RUNNING;
+        if (!readPatchTime(context, input.getPatchTime())) {
+            return false;
+        }
+        try {
+            context.launchDateTime = Instant.ofEpochSecond(input.getLaunchTime()).atZone(UTC);
+        } catch (DateTimeException e) {
+            context.error = "Incorrect launch time: " + input.getLaunchTime();
+            return false;
+        }
+        try {
+            context.currentDateTime = Instant.ofEpochSecond(input.getCurrentTime()).atZone(UTC);
+        } catch (DateTimeException e) {
+            context.error = "Incorrect current time: " + input.getCurrentTime();
+            return false;
+        }
+        return readLocalTime(context);
+    }
+
+    private boolean readTimeZone(EvaluationContext context, String timeZone) {
+        try {
+            context.localTimeZone = zoneCache.get(timeZone);
+        } catch (Exception e) {
+            context.error = "Incorrect time zone:" + timeZone;
+            return false;
         }
         return true;
     }
 
-    private Result[] processCommands(String[] commands) {
-        //config commands
-        for (int i = 0; i < commands.length; i++) {
-            if (!commands[i].startsWith("[")) {
-                error = "No '[' found at command origin: " + workTime;
+    private boolean readPatchTime(EvaluationContext context, String patchTime) {
+        PatchCalendar calendar = getPatchCalendar(patchTime);
+        if (calendar.isFailed()) {
+            context.error = calendar.getError();
+            return false;
+        }
+        context.patchCalendar = calendar;
+        return true;
+    }
+
+    /**
+     * Returns the shared calendar of the given patch time string, parsing it on a miss.
+     *
+     * @param patchTime the patch time string, empty if there is none.
+     * @return the calendar, possibly a failed one.
+     */
+    PatchCalendar getPatchCalendar(String patchTime) {
+        return patchTime.isEmpty() ? PatchCalendar.EMPTY : patchCalendars.getUnchecked(patchTime);
+    }
+
+    /**
+     * Derives the local time and applies the daylight saving shift to the current time.
+     * Both are looked up in the offset table of the cached zone.
+     */
+    private boolean readLocalTime(EvaluationContext context) {
+        if (context.currentDateTime == null || context.localTimeZone == null) {
+            context.error = "Null main arguments";
+            return false;
+        }
+        context.currentEpochSecond = context.currentDateTime.toEpochSecond();
+        int offsetInfo = context.localTimeZone.offsetInfo(context.currentEpochSecond);
+        context.localDateTime = context.currentEpochSecond + ZoneCache.offsetSeconds(offsetInfo);
+        if (ZoneCache.isDaylightSavings(offsetInfo)) {
+            context.currentDateTime = context.currentDateTime.plusHours(1);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the UTC shift of the schedule and executes its primary commands.
+     *
+     * @return the command results, or null if a command failed, the error is stored in the context.
+     */
+    Result[] processCommands(EvaluationContext context, CompiledSchedule schedule) {
+        CommandContext commandContext = applyUTCshift(context, schedule);
+        List<CompiledSchedule.Bracket> brackets = schedule.getBrackets();
+        Result[] result = new Result[brackets.size()];
+        long start = System.nanoTime();
+        for (int i = 0; i < result.length; i++) {
+            CompiledSchedule.Bracket bracket = brackets.get(i);
+            result[i] = bracket.getCommand().execute(commandContext, bracket.getNode());
+            long end = System.nanoTime();
+            metrics.recordCommand(bracket.getNode().getKeyword(), end - start);
+            start = end;
+            if (result[i].getAction() == Action.ERROR) {
+                context.error = result[i].getError();
                 return null;
             }
-            String[] command = Utilities.splitArguments(commands[i], ARGUMENT_SPLIT_PATTERN);
-            String key = command[0].substring(1);
-            if (CONFIG_MAP.containsKey(key)) {
-                Result result;
-                try {
-                    result = ((Command) CONFIG_MAP.get(key).getConstructor(ServerStateCommandProcessor.class)
-                            .newInstance(this)).execute(commands[i].substring(1));
-                    if (result.getAction() == Action.ERROR) {
-                        error = result.getError();
-                        return null;
-                    }
-                } catch (Exception e) {
-                    error = "Command instantiation error for command: "
-                            + CONFIG_MAP.get(key).getCanonicalName();
-                    return null;
-                }
-                commands[i] = null;
-            }
         }
-        currentDateTime = currentDateTime.plusHours(UTCshift);
-        //primary commands
-        Result[] result = new Result[commands.length];
-        for (int i = 0; i < commands.length; i++) {
-            if (commands[i] == null) {
-                continue;
-            }
-            String[] command = Utilities.splitArguments(commands[i], ARGUMENT_SPLIT_PATTERN);
-            String key = command[0].substring(1);
-            if (!PRIMARY_MAP.containsKey(key)) {
-                error = "Illegal command: " + key;
-                return null;
+        return result;
+    }
+
+    /**
+     * Applies the UTC shift of the schedule and executes its primary commands in the order of the highest
+     * action they can return, until the remaining commands can't change the result.
+     * <p>
+     * Commands returning the action of the best result so far still run, since the last SKIP_START wins
+     * and all OFF reasons are joined. Once the commands that can ignore everything have run,
+     * patch time decides alone. Passing the results to {@link #calculateResult} gives the same result
+     * as {@link #processCommands}, which runs every command of a schedule containing a command that may fail.
+     *
+     * @return the command results, null for the skipped commands,
+     * or null if a command failed, the error is stored in the context.
+     */
+    Result[] processPrioritizedCommands(EvaluationContext context, CompiledSchedule schedule) {
+        List<CompiledSchedule.Bracket> prioritized = schedule.getPrioritizedBrackets();
+        if (prioritized == null) {
+            return processCommands(context, schedule);
+        }
+        CommandContext commandContext = applyUTCshift(context, schedule);
+        Result[] result = new Result[prioritized.size()];
+        int best = 0;
+        boolean patchTimeChecked = false;
+        long start = System.nanoTime();
+        for (CompiledSchedule.Bracket bracket : prioritized) {
+            int highest = bracket.getHighestAction().precedence;
+            if (highest < best) {
+                break;
             }
-            try {
-                result[i] = ((Command) PRIMARY_MAP.get(key).getConstructor(ServerStateCommandProcessor.class)
-                        .newInstance(this)).execute(commands[i].substring(1));
-                if (result[i].getAction() == Action.ERROR) {
-                    error = result[i].getError();
-                    return null;
+            if (!patchTimeChecked && highest < Action.IGNORE_ALL.precedence) {
+                patchTimeChecked = true;
+                if (isPatchTime(context)) {
+                    break;
                 }
-            } catch (Exception e) {
-                error = "Command instantiation error for command: "
-                        + PRIMARY_MAP.get(key).getCanonicalName();
+            }
+            Result value = bracket.getCommand().execute(commandContext, bracket.getNode());
+            long end = System.nanoTime();
+            metrics.recordCommand(bracket.getNode().getKeyword(), end - start);
+            start = end;
+            if (value.getAction() == Action.ERROR) {
+                context.error = value.getError();
                 return null;
             }
+            result[bracket.getIndex()] = value;
+            best = Math.max(best, value.getAction().precedence);
         }
         return result;
     }
 
-    private Map<String, String> calculateResult(Result[] result) {
+    private static CommandContext applyUTCshift(EvaluationContext context, CompiledSchedule schedule) {
+        context.setUTCshift(schedule.getUTCshift());
+        context.currentDateTime = context.currentDateTime.plusHours(context.getUTCshift());
+        return new CommandContext(context);
+    }
+
+    /**
+     * Picks the action of highest precedence among the command results and stores it in the context.
+     */
+    void calculateResult(EvaluationContext context, Result[] result) {
         boolean ignoreAll = false;
         boolean ignoreTime = false;
         boolean isWorkTime = false;
@@ -273,6 +425,7 @@ public class ServerStateCommandProcessor {
         Result endSkipped = null;
         Result start = null;
         Result stop = null;
+        StringBuilder stopReasons = null;
         Result neutral = null;
         for (Result value : result) {
             if (value == null) {
@@ -307,7 +460,10 @@ public class ServerStateCommandProcessor {
                     if (stop == null) {
                         stop = value;
                     } else {
-                        stop.addReason(value.getReason());
+                        if (stopReasons == null) {
+                            stopReasons = new StringBuilder().append(stop.getReason());
+                        }
+                        stopReasons.append(";\n").append(value.getReason());
                     }
                     break;
                 }
@@ -320,93 +476,122 @@ public class ServerStateCommandProcessor {
             }
         }
         if (ignoreAll) {
-            return returnJSONString(Action.IGNORE_ALL, "No action taken due to OFF command");
-        } else if (isPatchTime(patchTime)) {
-            if (isRunning) {
-                return returnJSONString(Action.SKIP_START,
+            setResult(context, Action.IGNORE_ALL, "No action taken due to OFF command");
+        } else if (isPatchTime(context)) {
+            if (context.isRunning) {
+                setResult(context, Action.SKIP_START,
                         "Patch Time but the server was already running");
+            } else {
+                setResult(context, Action.ON, "Patch Time turning on the server");
             }
-            return returnJSONString(Action.ON, "Patch Time turning on the server");
         } else if (ignoreTime) {
-            return returnJSONString(Action.IGNORE_TIME, "Not Patch Time and Manual command");
+            setResult(context, Action.IGNORE_TIME, "Not Patch Time and Manual command");
         } else if (isWorkTime) {
-            return returnJSONString(Action.WORK_TIME, "It is work time and the server is running");
+            setResult(context, Action.WORK_TIME, "It is work time and the server is running");
         } else if (startSkipped != null) {
-            return returnJSONString(Action.SKIP_START, startSkipped.getReason());
+            setResult(context, Action.SKIP_START, startSkipped.getReason());
         } else if (endSkipped != null) {
-            return returnJSONString(Action.SKIP_END, endSkipped.getReason());
+            setResult(context, Action.SKIP_END, endSkipped.getReason());
         } else if (start != null) {
-            return returnJSONString(Action.ON, start.getReason());
+            setResult(context, Action.ON, start.getReason());
         } else if (stop != null) {
-            return returnJSONString(Action.OFF, stop.getReason());
+            setResult(context, Action.OFF, stopReasons == null ? stop.getReason() : stopReasons.toString());
         } else if (neutral != null) {
-            return returnJSONString(Action.NEUTRAL, neutral.getReason());
+            setResult(context, Action.NEUTRAL, neutral.getReason());
         } else {
-            return returnJSONString("Could not calculate result: " + workTime);
+            context.error = "Could not calculate result: " + context.workTime;
         }
     }
 
-    private boolean isPatchTime(String patchTime) {
-        if (patchTime.isBlank()) {
-            return false;
-        }
-        Matcher matcher = Pattern.compile(PATCH_TIME_REGEX).matcher(patchTime);
-        if (matcher.matches()) {
-            int shift = Integer.parseInt(matcher.group(1));
-            if (currentDateTime.getDayOfWeek() == DateTimeCommand.DAYS.get(matcher.group(2)) &&
-                    currentDateTime.getHour() == Integer.parseInt(matcher.group(3)) &&
-                    currentDateTime.getMinute() == Integer.parseInt(matcher.group(4)) &&
-                    currentDateTime.getDayOfMonth() - (shift - 1) * 7 > 0 &&
-                    currentDateTime.getDayOfMonth() - shift * 7 <= 0) {
-                return true;
-            }
-        }
-        return false;
+    private boolean isPatchTime(EvaluationContext context) {
+        ZonedDateTime currentDateTime = context.currentDateTime;
+        return context.patchCalendar.contains(currentDateTime.getDayOfMonth(),
+                currentDateTime.getDayOfWeek().ordinal(),
+                currentDateTime.getHour() * 60 + currentDateTime.getMinute());
     }
 
     /**
      * Possible command results and errors.
+     * <p>
+     * The precedence is the order in which {@link #calculateResult} picks the result, patch time
+     * ranks between IGNORE_ALL and IGNORE_TIME. An error ends the evaluation before any result is picked.
      */
     public enum Action {
-        ON("Start"),
-        OFF("Stop"),
-        NEUTRAL(""),
-        WORK_TIME(""),
-        IGNORE_TIME(""),
-        IGNORE_ALL(""),
-        SKIP_START("Skip Start"),
-        SKIP_END("Skip Stop"),
-        ERROR("Error");
+        ON("Start", 3),
+        OFF("Stop", 2),
+        NEUTRAL("", 1),
+        WORK_TIME("", 6),
+        IGNORE_TIME("", 7),
+        IGNORE_ALL("", 8),
+        SKIP_START("Skip Start", 5),
+        SKIP_END("Skip Stop", 4),
+        ERROR("Error", 9);
         public final String name;
+        public final int precedence;
 
-        Action(String name) {
+        Action(String name, int precedence) {
             this.name = name;
+            this.precedence = precedence;
+        }
+    }
+
+    /**
+     * Creates an error result for an input that could not be evaluated.
+     *
+     * @param error the error message.
+     * @return the JSON represented as a Map<\String, String>.
+     */
+    Map<String, String> errorResult(String error) {
+        return returnJSONString(errorContext(error));
+    }
+
+    /**
+     * Creates the context of an input that could not be evaluated.
+     *
+     * @param error the error message.
+     * @return the context holding the error.
+     */
+    static EvaluationContext errorContext(String error) {
+        EvaluationContext context = new EvaluationContext();
+        context.error = error;
+        return context;
+    }
+
+    private void setResult(EvaluationContext context, Action action, String reason) {
+        context.action = action;
+        context.reason = reason;
+    }
+
+    private Map<String, String> returnJSONString(EvaluationContext context) {
+        if (context.error != null) {
+            return returnJSONString(context, context.error);
         }
+        return returnJSONString(context, context.action, context.reason);
     }
 
-    private Map<String, String> returnJSONString(String error) {
+    private Map<String, String> returnJSONString(EvaluationContext context, String error) {
         Map<String, String> outJSON = new HashMap<>();
         outJSON.put("Action", "");
         outJSON.put("Reason", "");
         outJSON.put("ErrorFlag", "True");
         outJSON.put("ErrorMessage", error);
-        outJSON.put("LocalTime", formatLocalTime());
+        outJSON.put("LocalTime", formatLocalTime(context));
         return outJSON;
     }
 
-    private Map<String, String> returnJSONString(Action action, String reason) {
+    private Map<String, String> returnJSONString(EvaluationContext context, Action action, String reason) {
         Map<String, String> outJSON = new HashMap<>();
         outJSON.put("Action", action.name);
         outJSON.put("Reason", reason);
         outJSON.put("ErrorFlag", "False");
         outJSON.put("ErrorMessage", "");
-        outJSON.put("LocalTime", formatLocalTime());
+        outJSON.put("LocalTime", formatLocalTime(context));
         return outJSON;
     }
 
-    private String formatLocalTime() {
-        if (localDateTime != null) {
-            return localDateTime.format(DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss"));
+    private String formatLocalTime(EvaluationContext context) {
+        if (context.localDateTime != EvaluationContext.NO_LOCAL_TIME) {
+            return JsonResponseWriter.formatLocalTime(context.localDateTime);
         }
         return "error";
     }
@@ -0,0 +1,307 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays a schedule over a past or future date range, e.g. to plan capacity and cost.
+ * <p>
+ * The server is expected to follow every decision like in a forecast, so the range is a sequence
+ * of running and stopped segments separated by the transitions {@link ForecastProcessor} finds.
+ * Daylight saving time, the UTC shift, patch windows and [OSH n] are applied exactly as when polling
+ * /process every minute, without evaluating a single minute.
+ * <p>
+ * Long ranges are split into chunks that are simulated in parallel assuming the server is stopped
+ * at the start of the chunk. A chunk whose assumption turns out to be wrong is simulated again
+ * from the actual state once the previous chunks are known.
+ */
+@Component
+public class SimulationProcessor {
+    public static final int MAX_DAYS = 3660;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DEFAULT_CHUNK_SECONDS = 31 * SECONDS_PER_DAY;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/uuuu");
+    private final ServerStateCommandProcessor processor;
+    private final ForecastProcessor forecastProcessor;
+    private final long chunkSeconds;
+    private final ForkJoinPool pool;
+
+    /**
+     * The simulation processor constructor.
+     *
+     * @param processor         the processor reading the inputs.
+     * @param forecastProcessor the forecast finding the transitions.
+     * @param parallelism       the amount of threads simulating chunks, 0 to use one thread per available processor.
+     */
+    @Autowired
+    public SimulationProcessor(ServerStateCommandProcessor processor, ForecastProcessor forecastProcessor,
+                               @Value("${processor.simulation-parallelism:0}") int parallelism) {
+        this(processor, forecastProcessor, parallelism, DEFAULT_CHUNK_SECONDS);
+    }
+
+    /**
+     * @param chunkSeconds the length of the chunks simulated in parallel.
+     */
+    SimulationProcessor(ServerStateCommandProcessor processor, ForecastProcessor forecastProcessor, int parallelism,
+                        long chunkSeconds) {
+        this.processor = processor;
+        this.forecastProcessor = forecastProcessor;
+        this.chunkSeconds = chunkSeconds;
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Simulates the given input.
+     *
+     * @param input the JSON taken by {@link ServerStateCommandProcessor#run(Map)} without "Current Time",
+     *              containing "From" and "To", the simulated range in UTC of at most {@link #MAX_DAYS} days.
+     *              The "Server State" and "Launch Time" are the state at the start of the range.
+     * @return the JSON containing "ErrorFlag", "ErrorMessage", "UptimeSeconds", "Starts", "Stops" and "Days",
+     * a list of JSONs containing "Date", "UptimeSeconds", "Starts" and "Stops" for every day of the range
+     * in the time zone of the server.
+     */
+    public Map<String, Object> run(Map<String, String> input) {
+        if (input == null) {
+            return error("Null argument");
+        }
+        String from = input.get("From");
+        String to = input.get("To");
+        if (from == null || to == null || from.isEmpty() || to.isEmpty()) {
+            return error("Null argument");
+        }
+        long fromSeconds = TimestampParser.parse(from);
+        if (fromSeconds == TimestampParser.INVALID) {
+            return error("Incorrect from time: " + from);
+        }
+        long toSeconds = TimestampParser.parse(to);
+        if (toSeconds == TimestampParser.INVALID) {
+            return error("Incorrect to time: " + to);
+        }
+        if (toSeconds <= fromSeconds || toSeconds - fromSeconds > MAX_DAYS * SECONDS_PER_DAY) {
+            return error("Incorrect range: " + from + " - " + to);
+        }
+        Map<String, String> startInput = new HashMap<>(input);
+        startInput.put("Current Time", from);
+        EvaluationContext context = new EvaluationContext();
+        if (!processor.readInput(context, startInput)) {
+            return error(context.error);
+        }
+        ForecastProcessor.Plan plan = forecastProcessor.plan(context);
+        if (plan == null) {
+            return error(context.error);
+        }
+        ZoneRules rules = context.localTimeZone.getRules();
+        int chunkCount = (int) ((toSeconds - fromSeconds + chunkSeconds - 1) / chunkSeconds);
+        long[][] speculated = new long[chunkCount][];
+        pool.invoke(new ChunkTask(plan, rules, fromSeconds, toSeconds, speculated, 0, chunkCount));
+        long[] transitions = merge(plan, rules, context, fromSeconds, toSeconds, speculated);
+        return summarize(context, fromSeconds, toSeconds, transitions);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Joins the chunks in order, simulating again every chunk that didn't start stopped.
+     *
+     * @return the times of all transitions, the server state flips at every one of them.
+     */
+    private long[] merge(ForecastProcessor.Plan plan, ZoneRules rules, EvaluationContext context, long from, long to,
+                         long[][] speculated) {
+        boolean running = context.isRunning;
+        long launch = context.launchDateTime.toEpochSecond();
+        // the search continues one minute after a transition, like the forecast does
+        long cursor = from;
+        long[] transitions = new long[16];
+        int count = 0;
+        for (int i = 0; i < speculated.length; i++) {
+            long chunkStart = from + i * chunkSeconds;
+            long chunkEnd = Math.min(to, chunkStart + chunkSeconds);
+            long[] chunk = speculated[i];
+            if (running || cursor > chunkStart) {
+                chunk = simulate(plan, rules, running, launch, Math.max(cursor, chunkStart), chunkEnd);
+            }
+            for (long time : chunk) {
+                running = !running;
+                if (running) {
+                    launch = time;
+                }
+                cursor = time + 60;
+            }
+            if (count + chunk.length > transitions.length) {
+                transitions = Arrays.copyOf(transitions, Math.max(transitions.length * 2, count + chunk.length));
+            }
+            System.arraycopy(chunk, 0, transitions, count, chunk.length);
+            count += chunk.length;
+        }
+        return Arrays.copyOf(transitions, count);
+    }
+
+    /**
+     * Finds the transitions in the given range.
+     *
+     * @return the times of the transitions.
+     */
+    private static long[] simulate(ForecastProcessor.Plan plan, ZoneRules rules, boolean running, long launch,
+                                   long from, long to) {
+        long[] transitions = new long[16];
+        int count = 0;
+        Instant cursor = Instant.ofEpochSecond(from);
+        Instant until = Instant.ofEpochSecond(to);
+        ZonedDateTime launchTime = Instant.ofEpochSecond(launch).atZone(ServerStateCommandProcessor.UTC);
+        while (cursor.isBefore(until)) {
+            Instant next = ForecastProcessor.nextTransition(plan, rules, running, launchTime, cursor, until);
+            if (next == null) {
+                break;
+            }
+            if (count == transitions.length) {
+                transitions = Arrays.copyOf(transitions, count * 2);
+            }
+            transitions[count++] = next.getEpochSecond();
+            running = !running;
+            if (running) {
+                launchTime = next.atZone(ServerStateCommandProcessor.UTC);
+            }
+            cursor = next.plusSeconds(60);
+        }
+        return Arrays.copyOf(transitions, count);
+    }
+
+    /**
+     * Adds up the running segments per day of the time zone of the server.
+     */
+    private static Map<String, Object> summarize(EvaluationContext context, long from, long to, long[] transitions) {
+        ZoneId zone = context.localTimeZone.getId();
+        LocalDate firstDay = Instant.ofEpochSecond(from).atZone(zone).toLocalDate();
+        LocalDate lastDay = Instant.ofEpochSecond(to - 1).atZone(zone).toLocalDate();
+        int days = (int) (lastDay.toEpochDay() - firstDay.toEpochDay() + 1);
+        long[] dayStarts = new long[days + 1];
+        for (int day = 0; day <= days; day++) {
+            dayStarts[day] = firstDay.plusDays(day).atStartOfDay(zone).toEpochSecond();
+        }
+        long[] uptime = new long[days];
+        int[] starts = new int[days];
+        int[] stops = new int[days];
+        boolean running = context.isRunning;
+        long segmentStart = from;
+        for (long time : transitions) {
+            int day = dayIndex(dayStarts, time);
+            if (running) {
+                addUptime(dayStarts, uptime, segmentStart, time);
+                stops[day]++;
+            } else {
+                starts[day]++;
+            }
+            running = !running;
+            segmentStart = time;
+        }
+        if (running) {
+            addUptime(dayStarts, uptime, segmentStart, to);
+        }
+        long totalUptime = 0;
+        int totalStarts = 0;
+        int totalStops = 0;
+        List<Map<String, String>> dayList = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            Map<String, String> dayJSON = new HashMap<>();
+            dayJSON.put("Date", firstDay.plusDays(day).format(DATE_FORMATTER));
+            dayJSON.put("UptimeSeconds", String.valueOf(uptime[day]));
+            dayJSON.put("Starts", String.valueOf(starts[day]));
+            dayJSON.put("Stops", String.valueOf(stops[day]));
+            dayList.add(dayJSON);
+            totalUptime += uptime[day];
+            totalStarts += starts[day];
+            totalStops += stops[day];
+        }
+        Map<String, Object> outJSON = new HashMap<>();
+        outJSON.put("ErrorFlag", "False");
+        outJSON.put("ErrorMessage", "");
+        outJSON.put("UptimeSeconds", String.valueOf(totalUptime));
+        outJSON.put("Starts", String.valueOf(totalStarts));
+        outJSON.put("Stops", String.valueOf(totalStops));
+        outJSON.put("Days", dayList);
+        return outJSON;
+    }
+
+    private static void addUptime(long[] dayStarts, long[] uptime, long from, long to) {
+        for (int day = dayIndex(dayStarts, from); from < to; day++) {
+            long end = Math.min(to, dayStarts[day + 1]);
+            uptime[day] += end - from;
+            from = end;
+        }
+    }
+
+    /**
+     * @return the index of the day containing the given time.
+     */
+    private static int dayIndex(long[] dayStarts, long time) {
+        int index = Arrays.binarySearch(dayStarts, time);
+        return index >= 0 ? Math.min(index, dayStarts.length - 2) : -index - 2;
+    }
+
+    private static Map<String, Object> error(String error) {
+        Map<String, Object> outJSON = new HashMap<>();
+        outJSON.put("ErrorFlag", "True");
+        outJSON.put("ErrorMessage", error);
+        outJSON.put("UptimeSeconds", "");
+        outJSON.put("Starts", "");
+        outJSON.put("Stops", "");
+        outJSON.put("Days", new ArrayList<>());
+        return outJSON;
+    }
+
+    /**
+     * Simulates a range of chunks assuming the server is stopped at the start of every chunk.
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private final ForecastProcessor.Plan plan;
+        private final ZoneRules rules;
+        private final long from;
+        private final long to;
+        private final long[][] results;
+        private final int first;
+        private final int end;
+
+        ChunkTask(ForecastProcessor.Plan plan, ZoneRules rules, long from, long to, long[][] results, int first,
+                  int end) {
+            this.plan = plan;
+            this.rules = rules;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first == 1) {
+                long chunkStart = from + first * chunkSeconds;
+                results[first] = simulate(plan, rules, false, chunkStart, chunkStart,
+                        Math.min(to, chunkStart + chunkSeconds));
+                return;
+            }
+            int middle = (first + end) >>> 1;
+            invokeAll(new ChunkTask(plan, rules, from, to, results, first, middle),
+                    new ChunkTask(plan, rules, from, to, results, middle, end));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Evaluates newline delimited JSON streams.
+ * <p>
+ * The input is read in windows of at most a fixed amount of lines, every window is evaluated
+ * by the {@link BatchProcessor} and its results are written and flushed before the next
+ * window is read. A window is evaluated early when no further line is available yet,
+ * so a client that waits for its answers before sending more lines gets them at once.
+ * Lines are limited to a maximum amount of bytes, so memory use depends neither on the length
+ * of the stream nor on the length of a line.
+ */
+@Component
+public class StreamProcessor {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final int DEFAULT_MAX_LINE_BYTES = 65536;
+    private static final TypeReference<Map<String, String>> INPUT_TYPE = new TypeReference<Map<String, String>>() {
+    };
+    private final ServerStateCommandProcessor processor;
+    private final BatchProcessor batchProcessor;
+    private final ObjectMapper mapper;
+    @Getter
+    private final int windowSize;
+    @Getter
+    private final int maxLineBytes;
+
+    /**
+     * The stream processor constructor.
+     *
+     * @param processor      the processor recording the response metrics.
+     * @param batchProcessor the processor evaluating the windows.
+     * @param mapper         the JSON mapper.
+     * @param windowSize     the amount of lines evaluated at once.
+     * @param maxLineBytes   the maximum length of a line in bytes, longer lines get an error result.
+     */
+    @Autowired
+    public StreamProcessor(ServerStateCommandProcessor processor, BatchProcessor batchProcessor, ObjectMapper mapper,
+                           @Value("${processor.stream-window-size:256}") int windowSize,
+                           @Value("${processor.stream-max-line-bytes:" + DEFAULT_MAX_LINE_BYTES + "}")
+                                   int maxLineBytes) {
+        this.processor = processor;
+        this.batchProcessor = batchProcessor;
+        this.mapper = mapper;
+        this.windowSize = Math.max(1, windowSize);
+        this.maxLineBytes = Math.max(1, maxLineBytes);
+    }
+
+    /**
+     * Processes every line of the input and writes one result line for it in the same order.
+     * Blank lines are skipped, lines that are not valid JSON objects or longer than the maximum
+     * get an error result. The rest of a line that is too long is skipped without being buffered.
+     *
+     * @param input  the newline delimited /process inputs.
+     * @param output the stream to write newline delimited /process results to.
+     * @throws IOException if reading or writing fails.
+     */
+    public void run(InputStream input, OutputStream output) throws IOException {
+        LineReader reader = new LineReader(input, maxLineBytes);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        List<String> window = new ArrayList<>(windowSize);
+        while (reader.next()) {
+            String line = reader.line();
+            if (line != null && line.isBlank()) {
+                continue;
+            }
+            window.add(line);
+            if (window.size() == windowSize || !reader.ready()) {
+                writeWindow(window, writer);
+            }
+        }
+        if (!window.isEmpty()) {
+            writeWindow(window, writer);
+        }
+    }
+
+    private void writeWindow(List<String> window, Writer writer) throws IOException {
+        for (String result : evaluate(window).join()) {
+            writer.write(result);
+            writer.write('\n');
+        }
+        writer.flush();
+        window.clear();
+    }
+
+    /**
+     * Evaluates a window of input lines without blocking the calling thread.
+     * The lines are parsed on the pool of the {@link BatchProcessor}.
+     *
+     * @param lines the JSON inputs, one per line, null for a line that was too long to be read.
+     * @return the future JSON results in the order of the lines, without line separators.
+     */
+    public CompletableFuture<List<String>> evaluate(List<String> lines) {
+        String[] errors = new String[lines.size()];
+        return batchProcessor.supplyAsync(() -> parse(lines, errors))
+                .thenCompose(batchProcessor::evaluateAsync)
+                .thenApply(contexts -> encode(contexts, errors));
+    }
+
+    /**
+     * Parses the lines, a line that can't be parsed gets a null input and its error.
+     */
+    private List<Map<String, String>> parse(List<String> lines, String[] errors) {
+        List<Map<String, String>> inputs = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line == null || line.length() > maxLineBytes
+                    || line.getBytes(StandardCharsets.UTF_8).length > maxLineBytes) {
+                inputs.add(null);
+                errors[i] = "Malformed input: line is longer than " + maxLineBytes + " bytes";
+                continue;
+            }
+            try {
+                inputs.add(mapper.readValue(line, INPUT_TYPE));
+            } catch (JsonProcessingException e) {
+                inputs.add(null);
+                errors[i] = "Malformed input: " + e.getOriginalMessage();
+            }
+        }
+        return inputs;
+    }
+
+    private List<String> encode(List<EvaluationContext> contexts, String[] errors) {
+        long start = System.nanoTime();
+        List<String> encoded = new ArrayList<>(contexts.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            EvaluationContext context = errors[i] == null
+                    ? contexts.get(i) : ServerStateCommandProcessor.errorContext(errors[i]);
+            encoded.add(JsonResponseWriter.toString(context));
+        }
+        processor.getMetrics().record(ProcessorMetrics.Phase.RESPONSE, System.nanoTime() - start, contexts.size());
+        return encoded;
+    }
+
+    /**
+     * Reads lines separated by '\n' or "\r\n" from a stream, keeping at most the maximum amount of bytes of a line.
+     */
+    static final class LineReader {
+        private final InputStream input;
+        private final int maxLineBytes;
+        private final byte[] buffer = new byte[8192];
+        /**
+         * The bytes of the current line, with room for a carriage return before the line feed.
+         */
+        private final byte[] line;
+        private int position;
+        private int limit;
+        private int length;
+        private boolean tooLong;
+
+        LineReader(InputStream input, int maxLineBytes) {
+            this.input = input;
+            this.maxLineBytes = maxLineBytes;
+            line = new byte[maxLineBytes + 1];
+        }
+
+        /**
+         * Reads the next line.
+         *
+         * @return false at the end of the stream.
+         * @throws IOException if reading fails.
+         */
+        boolean next() throws IOException {
+            length = 0;
+            tooLong = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(0, input.read(buffer));
+                    position = 0;
+                    if (limit == 0) {
+                        return read;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                int count = position - start;
+                if (!tooLong && length + count <= line.length) {
+                    System.arraycopy(buffer, start, line, length, count);
+                    length += count;
+                } else {
+                    tooLong = true;
+                }
+                if (position < limit) {
+                    position++;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return true if the next line can probably be read without blocking.
+         * @throws IOException if reading fails.
+         */
+        boolean ready() throws IOException {
+            for (int i = position; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    return true;
+                }
+            }
+            return input.available() > 0;
+        }
+
+        /**
+         * @return the current line without its separator, or null if it is longer than the maximum.
+         */
+        String line() {
+            int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+            return tooLong || end > maxLineBytes ? null : new String(line, 0, end, StandardCharsets.UTF_8);
+        }
+    }
+}
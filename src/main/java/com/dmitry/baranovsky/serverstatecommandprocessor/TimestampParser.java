@@ -0,0 +1,90 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+/**
+ * Parses "Current Time" and "Launch Time" values without regular expressions or allocations.
+ * <p>
+ * Accepts exactly the values the processor always accepted: {@code M/d/y H:mm:ss} where month, day and year
+ * are any amount of digits, the hour has one or two digits, minutes and seconds have two digits,
+ * and the date has to exist in the proleptic Gregorian calendar.
+ */
+public final class TimestampParser {
+    /**
+     * Returned for values that can't be parsed, no valid timestamp has this value.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+    private static final long MAX_YEAR = 999_999_999;
+    private static final long NUMBER_LIMIT = 10_000_000_000L;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_PER_CYCLE = 146_097;
+    private static final long DAYS_0000_TO_1970 = 719_468;
+
+    private TimestampParser() {
+    }
+
+    /**
+     * @param text the timestamp in UTC.
+     * @return the epoch seconds of the timestamp or {@link #INVALID}.
+     */
+    public static long parse(String text) {
+        int firstSlash = text.indexOf('/');
+        int secondSlash = firstSlash < 0 ? -1 : text.indexOf('/', firstSlash + 1);
+        int space = secondSlash < 0 ? -1 : text.indexOf(' ', secondSlash + 1);
+        if (space < 0) {
+            return INVALID;
+        }
+        long month = number(text, 0, firstSlash);
+        long day = number(text, firstSlash + 1, secondSlash);
+        long year = number(text, secondSlash + 1, space);
+        if (month < 1 || month > 12 || day < 1 || year < 0 || year > MAX_YEAR || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        int hourEnd = space + 1 + (text.length() - space - 1 == 7 ? 1 : 2);
+        if (text.length() - hourEnd != 6 || text.charAt(hourEnd) != ':' || text.charAt(hourEnd + 3) != ':') {
+            return INVALID;
+        }
+        long hour = number(text, space + 1, hourEnd);
+        long minute = number(text, hourEnd + 1, hourEnd + 3);
+        long second = number(text, hourEnd + 4, hourEnd + 6);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * @return the value of the digits between from and to, or -1 if there are none or another character.
+     */
+    private static long number(String text, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value < NUMBER_LIMIT ? value * 10 + (c - '0') : NUMBER_LIMIT;
+        }
+        return value;
+    }
+
+    private static long lengthOfMonth(long year, long month) {
+        if (month == 2) {
+            return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Counts days in 400 year cycles starting in March, so that the leap day is the last day of a year.
+     */
+    private static long epochDay(long year, long month, long day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * ((month + 9) % 12) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_CYCLE + dayOfEra - DAYS_0000_TO_1970;
+    }
+}
@@ -0,0 +1,170 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel of entries due at whole seconds.
+ * <p>
+ * Every level has 64 slots, a slot of the first level spans one second and a slot of every further level
+ * spans a whole turn of the level below. Entries are kept at the lowest level that can tell their slot apart
+ * and move one level down when the level below reaches their slot, so advancing by a second only touches
+ * the entries that are due and the entries that move down, never the whole wheel.
+ * <p>
+ * Entries are kept in doubly linked lists, so cancelling one is as cheap as scheduling it.
+ * Scheduling, cancelling and advancing are synchronized, the wheel is meant to be advanced by a single ticking thread.
+ *
+ * @param <T> the type of the scheduled values.
+ */
+public final class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    /**
+     * Six levels cover more than 2000 years, later entries wait in the last slot of the top level.
+     */
+    private static final int LEVELS = 6;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+    @SuppressWarnings("unchecked")
+    private final Entry<T>[][] slots = new Entry[LEVELS][SLOTS];
+    /**
+     * The next second to be processed.
+     */
+    private long current;
+    private int size;
+
+    /**
+     * @param start the first second to be processed, in epoch seconds.
+     */
+    public TimingWheel(long start) {
+        current = start;
+    }
+
+    /**
+     * A scheduled value, used to cancel it.
+     */
+    public static final class Entry<T> {
+        private final long deadline;
+        private final T value;
+        private Entry<T> previous;
+        private Entry<T> next;
+        /**
+         * The level and slot holding the entry, the level is -1 once the entry has been fired or cancelled.
+         */
+        private int level = -1;
+        private int slot;
+
+        Entry(long deadline, T value) {
+            this.deadline = deadline;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Schedules a value, values due before the next processed second are due with it.
+     *
+     * @param deadline the second the value is due at, in epoch seconds.
+     * @param value    the value.
+     * @return the entry of the value.
+     */
+    public synchronized Entry<T> schedule(long deadline, T value) {
+        Entry<T> entry = new Entry<>(deadline, value);
+        insert(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * Removes a scheduled value.
+     *
+     * @param entry the entry of the value.
+     * @return false if the value has already been fired or cancelled.
+     */
+    public synchronized boolean cancel(Entry<T> entry) {
+        if (entry.level < 0) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Processes every second up to and including the given one.
+     *
+     * @param now      the current second, in epoch seconds.
+     * @param consumer receives every value that is due, in the order of the deadlines.
+     */
+    public synchronized void advance(long now, Consumer<T> consumer) {
+        while (current <= now) {
+            for (int level = 1; level < LEVELS && (current & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+                cascade(level, (int) (current >> (SLOT_BITS * level)) & SLOT_MASK);
+            }
+            int slot = (int) current & SLOT_MASK;
+            // values scheduled by the consumer for this second are due with the next one
+            current++;
+            Entry<T> entry;
+            while ((entry = slots[0][slot]) != null) {
+                unlink(entry);
+                size--;
+                consumer.accept(entry.value);
+            }
+        }
+    }
+
+    /**
+     * @return the amount of scheduled values.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        Entry<T> entry = slots[level][slot];
+        slots[level][slot] = null;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            insert(entry);
+            entry = next;
+        }
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.previous == null) {
+            slots[entry.level][entry.slot] = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        entry.level = -1;
+    }
+
+    private void insert(Entry<T> entry) {
+        long delay = entry.deadline - current;
+        long deadline = entry.deadline;
+        if (delay < 0) {
+            deadline = current;
+            delay = 0;
+        } else if (delay > MAX_DELAY) {
+            deadline = current + MAX_DELAY;
+            delay = MAX_DELAY;
+        }
+        int level = 0;
+        while (delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (deadline >> (SLOT_BITS * level)) & SLOT_MASK;
+        Entry<T> head = slots[level][slot];
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        }
+        slots[level][slot] = entry;
+        entry.level = level;
+        entry.slot = slot;
+    }
+}
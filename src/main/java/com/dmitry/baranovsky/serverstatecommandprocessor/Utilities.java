@@ -1,18 +1,30 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
  * A utility class for miscellaneous functions.
  */
 public abstract class Utilities {
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
     public static String[] splitArguments(String arguments, String pattern) {
-        Pattern splitPattern = Pattern.compile(pattern);
-        return splitPattern.split(arguments);
+        return compile(pattern).split(arguments);
     }
 
     public static String[] splitArguments(String arguments, String pattern, int parts) {
-        Pattern splitPattern = Pattern.compile(pattern);
-        return splitPattern.split(arguments, parts);
+        return compile(pattern).split(arguments, parts);
+    }
+
+    /**
+     * Returns the compiled pattern, compiling every distinct pattern only once.
+     *
+     * @param pattern the regular expression.
+     * @return the compiled pattern.
+     */
+    public static Pattern compile(String pattern) {
+        return PATTERNS.computeIfAbsent(pattern, Pattern::compile);
     }
 }
\ No newline at end of file
@@ -1,10 +1,21 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,7 +25,27 @@ import java.util.Map;
  * </p>
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class WebController {
+    @Autowired
+    private ServerStateCommandProcessor processor;
+    @Autowired
+    private BatchProcessor batchProcessor;
+    @Autowired
+    private StreamProcessor streamProcessor;
+    @Autowired
+    private ForecastProcessor forecastProcessor;
+    @Autowired
+    private BinaryProcessor binaryProcessor;
+    @Autowired
+    private FleetRegistry fleetRegistry;
+    @Autowired
+    private DecisionPublisher decisionPublisher;
+    @Autowired
+    private SimulationProcessor simulationProcessor;
+    @Autowired
+    private LintProcessor lintProcessor;
+
     /**
      * Handles the /process request.
      * <p>
@@ -24,11 +55,208 @@ public class WebController {
      *
      * @param input the JSON containing "Work Hours", "Current Time", "Launch Time",
      *              "Time Zone", "Server State", "Patch Time".
-     * @return the JSON containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime".
+     * @param response the response the JSON containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime"
+     *                 is written to.
      */
     @RequestMapping(value = "/process", method = RequestMethod.POST)
-    public Map<String, String> process(@RequestBody Map<String, String> input) {
-        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
-        return processor.run(input);
+    public void process(@RequestBody Map<String, String> input, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        processor.run(input, response.getOutputStream());
+    }
+
+    /**
+     * Handles the /process request with a {@link BinaryProtocol} body.
+     *
+     * @param input the encoded input.
+     * @return the encoded result.
+     */
+    @RequestMapping(value = "/process", method = RequestMethod.POST,
+            consumes = BinaryProtocol.MEDIA_TYPE, produces = BinaryProtocol.MEDIA_TYPE)
+    public byte[] processBinary(@RequestBody byte[] input) {
+        return binaryProcessor.run(input);
+    }
+
+    /**
+     * Handles the /process/batch request.
+     * <p>
+     * Processes every input like /process does, errors are reported per input.
+     * </p>
+     *
+     * @param inputs   the JSON array of /process inputs.
+     * @param response the response the JSON array of /process results in the order of the inputs is written to.
+     */
+    @RequestMapping(value = "/process/batch", method = RequestMethod.POST)
+    public void processBatch(@RequestBody List<Map<String, String>> inputs, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        batchProcessor.run(inputs, response.getOutputStream());
+    }
+
+    /**
+     * Handles the /process/batch request with a {@link BinaryProtocol} body.
+     *
+     * @param inputs the encoded inputs.
+     * @return the encoded results in the order of the inputs.
+     */
+    @RequestMapping(value = "/process/batch", method = RequestMethod.POST,
+            consumes = BinaryProtocol.MEDIA_TYPE, produces = BinaryProtocol.MEDIA_TYPE)
+    public byte[] processBatchBinary(@RequestBody byte[] inputs) {
+        return binaryProcessor.runBatch(inputs);
+    }
+
+    /**
+     * Handles the /process/stream request.
+     * <p>
+     * Reads newline delimited /process inputs and writes a result line for every input
+     * as soon as it has been processed.
+     * </p>
+     *
+     * @param input the newline delimited JSON inputs.
+     * @return the newline delimited JSON results in the order of the inputs.
+     */
+    @RequestMapping(value = "/process/stream", method = RequestMethod.POST,
+            consumes = StreamProcessor.NDJSON, produces = StreamProcessor.NDJSON)
+    public StreamingResponseBody processStream(InputStream input) {
+        return output -> streamProcessor.run(input, output);
+    }
+
+    /**
+     * Handles the /process/subscribe request.
+     * <p>
+     * Sends the current decision and then a "decision" event whenever the action changes,
+     * so that a client doesn't have to poll /process. A client reconnecting with the id of the last
+     * event it received gets the transitions it has missed.
+     * </p>
+     *
+     * @param input       the /process input JSON, the "Current Time" is ignored.
+     * @param lastEventId the id of the last received event when reconnecting.
+     * @return the event stream of JSONs containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime"
+     * and "Time".
+     */
+    @RequestMapping(value = "/process/subscribe", method = RequestMethod.POST,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestBody Map<String, String> input,
+                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // no timeout, a client that is gone is noticed by the heartbeats of the publisher
+        SseEmitter emitter = new SseEmitter(0L);
+        DecisionPublisher.Subscription subscription = decisionPublisher.subscribe(input, lastEventId,
+                new DecisionPublisher.Listener() {
+                    @Override
+                    public void send(String id, Map<String, String> decision) throws IOException {
+                        emitter.send(SseEmitter.event().id(id).name("decision").data(decision));
+                    }
+
+                    @Override
+                    public void heartbeat() throws IOException {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+
+                    @Override
+                    public void complete() {
+                        emitter.complete();
+                    }
+                });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * Handles the /forecast request.
+     * <p>
+     * Returns the upcoming start and stop transitions so that a client can wait
+     * for the next transition instead of polling /process.
+     * </p>
+     *
+     * @param input the /process input JSON, optionally with "Transitions" and "Horizon Days".
+     * @return the JSON containing "ErrorFlag", "ErrorMessage" and "Transitions".
+     */
+    @RequestMapping(value = "/forecast", method = RequestMethod.POST)
+    public Map<String, Object> forecast(@RequestBody Map<String, String> input) {
+        return forecastProcessor.run(input);
+    }
+
+    /**
+     * Handles the /simulate request.
+     * <p>
+     * Replays the schedule over a date range, assuming the server follows every decision,
+     * and returns how long it would have been running.
+     * </p>
+     *
+     * @param input the /process input JSON without "Current Time", with "From" and "To".
+     * @return the JSON containing "ErrorFlag", "ErrorMessage", "UptimeSeconds", "Starts", "Stops" and "Days".
+     */
+    @RequestMapping(value = "/simulate", method = RequestMethod.POST)
+    public Map<String, Object> simulate(@RequestBody Map<String, String> input) {
+        return simulationProcessor.run(input);
+    }
+
+    /**
+     * Handles the /lint request.
+     * <p>
+     * Validates work time strings without evaluating them, e.g. before a rollout.
+     * </p>
+     *
+     * @param workTimes the JSON array of work time strings.
+     * @return the JSON array of JSONs containing "ErrorFlag", "ErrorMessage", "ErrorCode", "ErrorIndex"
+     * and "ErrorOffset", in the order of the work time strings.
+     */
+    @RequestMapping(value = "/lint", method = RequestMethod.POST)
+    public List<Map<String, String>> lint(@RequestBody List<String> workTimes) {
+        return lintProcessor.run(workTimes);
+    }
+
+    /**
+     * Handles the /servers/{serverId} request that registers a server or replaces its record.
+     *
+     * @param serverId the server id.
+     * @param input    the JSON containing "Work Hours", "Time Zone", "Launch Time", "Server State", "Patch Time".
+     * @return the JSON containing "ErrorFlag" and "ErrorMessage".
+     */
+    @RequestMapping(value = "/servers/{serverId}", method = RequestMethod.PUT)
+    public Map<String, String> putServer(@PathVariable String serverId, @RequestBody Map<String, String> input) {
+        return fleetRegistry.put(serverId, input);
+    }
+
+    /**
+     * Handles the /servers/{serverId} request that returns a registered server.
+     *
+     * @param serverId the server id.
+     * @return the JSON containing "Work Hours", "Time Zone", "Launch Time", "Server State", "Patch Time".
+     */
+    @RequestMapping(value = "/servers/{serverId}", method = RequestMethod.GET)
+    public Map<String, String> getServer(@PathVariable String serverId) {
+        return fleetRegistry.get(serverId);
+    }
+
+    /**
+     * Handles the /servers/{serverId} request that removes a registered server.
+     *
+     * @param serverId the server id.
+     * @return the JSON containing "ErrorFlag" and "ErrorMessage".
+     */
+    @RequestMapping(value = "/servers/{serverId}", method = RequestMethod.DELETE)
+    public Map<String, String> deleteServer(@PathVariable String serverId) {
+        return fleetRegistry.remove(serverId);
+    }
+
+    /**
+     * Handles the /process/{serverId} request.
+     * <p>
+     * Evaluates a registered server like /process evaluates a full input.
+     * </p>
+     *
+     * @param serverId the server id.
+     * @param input    the JSON optionally containing "Server State" and "Current Time".
+     * @param response the response the JSON containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime"
+     *                 is written to.
+     */
+    @RequestMapping(value = "/process/{serverId}", method = RequestMethod.POST)
+    public void processServer(@PathVariable String serverId,
+                              @RequestBody(required = false) Map<String, String> input,
+                              HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        fleetRegistry.process(serverId, input, response.getOutputStream());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Resolved time zones by time zone id.
+ * <p>
+ * Every zone keeps a table of the periods in which its offset and daylight saving state don't change,
+ * so that the local time and the daylight saving state of an epoch second are found by a binary search
+ * instead of going through {@link ZoneRules} and {@link java.time.ZonedDateTime}.
+ */
+public final class ZoneCache {
+    public static final long DEFAULT_SIZE = 1000;
+    /**
+     * 1900-01-01T00:00Z, the start of the precomputed periods.
+     */
+    static final long TABLE_START = -2_208_988_800L;
+    /**
+     * 2100-01-01T00:00Z, the end of the precomputed periods.
+     */
+    static final long TABLE_END = 4_102_444_800L;
+    private static final long STANDARD_OFFSET_STEP = 7 * 86_400;
+    private final Cache<String, Zone> zones;
+
+    /**
+     * @param size the maximum amount of zones to keep.
+     */
+    public ZoneCache(long size) {
+        zones = CacheBuilder.newBuilder().maximumSize(size).build();
+    }
+
+    /**
+     * @param id the time zone id as accepted by {@link ZoneId#of(String)}.
+     * @return the resolved zone.
+     * @throws java.time.DateTimeException if the id is invalid or unknown.
+     */
+    public Zone get(String id) {
+        Zone zone = zones.getIfPresent(id);
+        if (zone == null) {
+            zone = new Zone(ZoneId.of(id));
+            zones.put(id, zone);
+        }
+        return zone;
+    }
+
+    /**
+     * @param offsetInfo the value returned by {@link Zone#offsetInfo(long)}.
+     * @return the total offset from UTC in seconds.
+     */
+    public static int offsetSeconds(int offsetInfo) {
+        return offsetInfo >> 1;
+    }
+
+    /**
+     * @param offsetInfo the value returned by {@link Zone#offsetInfo(long)}.
+     * @return true if daylight saving time is in effect, as by {@link ZoneRules#isDaylightSavings(Instant)}.
+     */
+    public static boolean isDaylightSavings(int offsetInfo) {
+        return (offsetInfo & 1) != 0;
+    }
+
+    private static int resolveOffsetInfo(ZoneRules rules, long epochSecond) {
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        return rules.getOffset(instant).getTotalSeconds() << 1 | (rules.isDaylightSavings(instant) ? 1 : 0);
+    }
+
+    private static int standardOffset(ZoneRules rules, long epochSecond) {
+        return rules.getStandardOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+    }
+
+    /**
+     * A resolved time zone with its periods between 1900 and 2100.
+     */
+    public static final class Zone {
+        @Getter
+        private final ZoneId id;
+        @Getter
+        private final ZoneRules rules;
+        private final long[] periodStarts;
+        private final int[] periodInfos;
+
+        Zone(ZoneId id) {
+            this.id = id;
+            rules = id.getRules();
+            if (rules.isFixedOffset()) {
+                periodStarts = new long[]{TABLE_START};
+                periodInfos = new int[]{resolveOffsetInfo(rules, TABLE_START)};
+                return;
+            }
+            long[] starts = new long[16];
+            int[] infos = new int[16];
+            int size = 0;
+            long start = TABLE_START;
+            while (start < TABLE_END) {
+                ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(start));
+                long end = transition == null ? TABLE_END : Math.min(transition.toEpochSecond(), TABLE_END);
+                while (start < end) {
+                    if (size == starts.length) {
+                        starts = Arrays.copyOf(starts, size * 2);
+                        infos = Arrays.copyOf(infos, size * 2);
+                    }
+                    starts[size] = start;
+                    infos[size++] = resolveOffsetInfo(rules, start);
+                    start = standardOffsetChange(start, end);
+                }
+            }
+            periodStarts = Arrays.copyOf(starts, size);
+            periodInfos = Arrays.copyOf(infos, size);
+        }
+
+        /**
+         * Standard offset changes don't have to change the total offset, so they are not reported as transitions.
+         * They are searched week by week and located by bisection.
+         *
+         * @return the first second after start and before end with another standard offset, or end.
+         */
+        private long standardOffsetChange(long start, long end) {
+            int standard = standardOffset(rules, start);
+            long low = start;
+            long high = Math.min(start + STANDARD_OFFSET_STEP, end);
+            while (high < end && standardOffset(rules, high) == standard) {
+                low = high;
+                high = Math.min(high + STANDARD_OFFSET_STEP, end);
+            }
+            if (high == end && standardOffset(rules, end - 1) == standard) {
+                return end;
+            }
+            while (high - low > 1) {
+                long middle = low + (high - low) / 2;
+                if (standardOffset(rules, middle) == standard) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return high;
+        }
+
+        /**
+         * Looks up the offset and the daylight saving state of the given moment.
+         * Use {@link ZoneCache#offsetSeconds(int)} and {@link ZoneCache#isDaylightSavings(int)} to read the result.
+         *
+         * @param epochSecond the moment.
+         * @return the offset in seconds and the daylight saving flag packed in an int.
+         */
+        public int offsetInfo(long epochSecond) {
+            if (epochSecond < TABLE_START || epochSecond >= TABLE_END) {
+                return resolveOffsetInfo(rules, epochSecond);
+            }
+            int index = Arrays.binarySearch(periodStarts, epochSecond);
+            return periodInfos[index >= 0 ? index : -index - 2];
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.commands;
 
-import com.dmitry.baranovsky.serverstatecommandprocessor.Command;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandContext;
 import com.dmitry.baranovsky.serverstatecommandprocessor.CommandModule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import com.dmitry.baranovsky.serverstatecommandprocessor.PrimitiveCommand;
 import com.dmitry.baranovsky.serverstatecommandprocessor.Result;
 import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
 import com.google.common.eventbus.Subscribe;
 
 /**
@@ -11,32 +14,24 @@ import com.google.common.eventbus.Subscribe;
  * Always returns ON.
  */
 @CommandModule
-public class AlwaysOnCommand extends Command {
+public class AlwaysOnCommand extends PrimitiveCommand {
+    private static final Result ALREADY_ON = new Result(ServerStateCommandProcessor.Action.NEUTRAL,
+            "Server is already turned on");
+    private static final Result TURN_ON = new Result(ServerStateCommandProcessor.Action.ON,
+            "24h but the server was turned off");
 
-    /**
-     * Standard AlwaysOnCommand constructor. Requires the current command processor instance.
-     *
-     * @param processor the command processor to be used.
-     */
-    public AlwaysOnCommand(ServerStateCommandProcessor processor) {
-        super(processor);
+    @Override
+    public Result execute(CommandContext context, ScheduleNode node) {
+        return context.isRunning() ? ALREADY_ON : TURN_ON;
     }
 
     @Override
-    public Result execute(String argument) {
-        if (!argument.equals("24h")) {
-            return new Result("Wrong command format: " + argument);
-        }
-        if (processor.isRunning()) {
-            return new Result(ServerStateCommandProcessor.Action.NEUTRAL,
-                    "Server is already turned on");
-        }
-        return new Result(ServerStateCommandProcessor.Action.ON,
-                "24h but the server was turned off");
+    public ServerStateCommandProcessor.Action getHighestAction() {
+        return ServerStateCommandProcessor.Action.ON;
     }
 
     @Subscribe
-    private static void register(ServerStateCommandProcessor processor) {
-        processor.register("24h", AlwaysOnCommand.class);
+    private void register(CommandRegistry.Builder registry) {
+        registry.register("24h", this);
     }
 }
\ No newline at end of file
@@ -1,31 +1,25 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.commands;
 
 import com.dmitry.baranovsky.serverstatecommandprocessor.*;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.DayTimeNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.WeekBitmap;
 import com.google.common.eventbus.Subscribe;
 
 import java.time.DayOfWeek;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A class for commands that have days and time periods as arguments.
  * E.g. [Mon-Fri 14:00-17:00].
  */
 @CommandModule
-public class DateTimeCommand extends Command {
-    private boolean isErrorState = false;
-    private String error;
-    private boolean isStart = false;
-    private boolean isEnd = false;
-    private static final String ARGUMENT_SPLIT_PATTERN = "\\s+";
+public class DateTimeCommand extends PrimitiveCommand {
     /**
      * A map that links DayOfWeek enums to day of week names used in commands.
      */
     public static final Map<String, DayOfWeek> DAYS = new HashMap<>();
-    private static final String TIME_REGEX =
-            "^([0-9]|0[0-9]|1[0-9]|2[0-3]):([0-5][0-9])-([0-9]|0[0-9]|1[0-9]|2[0-3]):([0-5][0-9])$";
 
     static {
         DAYS.put("Mon", DayOfWeek.MONDAY);
@@ -37,164 +31,53 @@ public class DateTimeCommand extends Command {
         DAYS.put("Sun", DayOfWeek.SUNDAY);
     }
 
-    /**
-     * Standard DateTimeCommand constructor. Requires the current command processor instance.
-     *
-     * @param processor the command processor to be used.
-     */
-    public DateTimeCommand(ServerStateCommandProcessor processor) {
-        super(processor);
-    }
+    private static final Result OUTSIDE = new Result(ServerStateCommandProcessor.Action.NEUTRAL,
+            "Current time outside given work time");
+    private static final Result SKIP_START = new Result(ServerStateCommandProcessor.Action.SKIP_START,
+            "It is start time but server is already running");
+    private static final Result START = new Result(ServerStateCommandProcessor.Action.ON,
+            "It is start time according to given work time");
+    private static final Result END = new Result(ServerStateCommandProcessor.Action.OFF,
+            "It is work end time according to given work time");
+    private static final Result SKIP_END = new Result(ServerStateCommandProcessor.Action.SKIP_END,
+            "It is work end time but the server is already off");
+    private static final Result WORK_TIME = new Result(ServerStateCommandProcessor.Action.WORK_TIME,
+            "It is currently work time and the server is running");
+    private static final Result TURN_ON = new Result(ServerStateCommandProcessor.Action.ON,
+            "It is work time but the server was off");
 
     @Override
-    public Result execute(String argument) {
-        String[] arguments = Utilities.splitArguments(argument, ARGUMENT_SPLIT_PATTERN);
-
-        if ((!isDayOfWeekMatching(arguments) || !isTimeMatching(arguments[arguments.length - 1])) && !isErrorState) {
-            return new Result(ServerStateCommandProcessor.Action.NEUTRAL, "Current time outside given work time");
-        }
-        if (isErrorState) {
-            return new Result(error);
-        }
-        if (isStart) {
-            if (processor.isRunning()) {
-                return new Result(ServerStateCommandProcessor.Action.SKIP_START,
-                        "It is start time but server is already running");
-            }
-            return new Result(ServerStateCommandProcessor.Action.ON,
-                    "It is start time according to given work time");
+    public Result execute(CommandContext context, ScheduleNode node) {
+        WeekBitmap bitmap = ((DayTimeNode) node).getBitmap();
+        int minuteOfWeek = context.getMinuteOfWeek();
+        if (!bitmap.isWorkTime(minuteOfWeek)) {
+            return OUTSIDE;
         }
-        if (isEnd) {
-            if (processor.isRunning()) {
-                return new Result(ServerStateCommandProcessor.Action.OFF,
-                        "It is work end time according to given work time");
-            }
-            return new Result(ServerStateCommandProcessor.Action.SKIP_END,
-                    "It is work end time but the server is already off");
+        if (bitmap.isStart(minuteOfWeek)) {
+            return context.isRunning() ? SKIP_START : START;
         }
-        if (processor.isRunning()) {
-            return new Result(ServerStateCommandProcessor.Action.WORK_TIME,
-                    "It is currently work time and the server is running");
+        if (bitmap.isEnd(minuteOfWeek)) {
+            return context.isRunning() ? END : SKIP_END;
         }
-        return new Result(ServerStateCommandProcessor.Action.ON,
-                "It is work time but the server was off");
+        return context.isRunning() ? WORK_TIME : TURN_ON;
     }
 
-    private boolean isDayOfWeekMatching(String[] arguments) {
-        DayOfWeek currentDay = processor.getCurrentDateTime().getDayOfWeek();
-        boolean foundMatchingDay = false;
-        boolean readingDays = true;
-        int i = 0;
-        while (readingDays) {
-            // For a set of days with whitespace characters eg:'Mon, Tue, Wed'
-            if (arguments[i].endsWith(",")) {
-                String temp = arguments[i].substring(0, arguments[i].length() - 1);
-                if (!DAYS.containsKey(temp)) {
-                    isErrorState = true;
-                    error = error + "Illegal day of week:" + temp;
-                    break;
-                } else if (DAYS.get(temp) == currentDay) {
-                    foundMatchingDay = true;
-                }
-            }
-            // For a set of days without separating white space characters eg:'Mon,Tue,Wed'
-            else if (arguments[i].contains(",")) {
-                String[] setOfDays = Utilities.splitArguments(arguments[i], ",");
-                for (String day : setOfDays) {
-                    if (!DAYS.containsKey(day)) {
-                        isErrorState = true;
-                        error = error + "Illegal day of week:" + day;
-                        break;
-                    }
-                    if (DAYS.get(day) == processor.getCurrentDateTime().getDayOfWeek()) {
-                        foundMatchingDay = true;
-                    }
-                }
-                readingDays = false;
-            }
-            // For a day period eg:'Mon-Fri'
-            else if (arguments[i].contains("-")) {
-                String[] dayPeriod = Utilities.splitArguments(arguments[i], "-", 2);
-                if (!DAYS.containsKey(dayPeriod[0]) || !DAYS.containsKey(dayPeriod[1])) {
-                    isErrorState = true;
-                    error = error + "Illegal day of week:" + dayPeriod[0] + "-" + dayPeriod[1];
-                    break;
-                } else if (DAYS.get(dayPeriod[0]).getValue() <= currentDay.getValue() &&
-                        currentDay.getValue() <= DAYS.get(dayPeriod[1]).getValue()) {
-                    foundMatchingDay = true;
-                    readingDays = false;
-                } else {
-                    return false;
-                }
-            }
-            // For a single day or the last day of a set eg:'Tue'
-            else {
-                if (arguments[i].equals("All") ||
-                        arguments[i].equals("WD") && currentDay.getValue() < DayOfWeek.SATURDAY.getValue() ||
-                        arguments[i].equals("WE") && currentDay.getValue() > DayOfWeek.FRIDAY.getValue()) {
-                    foundMatchingDay = true;
-                    readingDays = false;
-                } else if (arguments[i].equals("WD") || arguments[i].equals("WE")) {
-                    readingDays = false;
-                } else if (!DAYS.containsKey(arguments[i])) {
-                    isErrorState = true;
-                    error = error + "Illegal day of week:" + arguments[i];
-                    break;
-                } else if (DAYS.get(arguments[i]) == currentDay) {
-                    foundMatchingDay = true;
-                    readingDays = false;
-                } else {
-                    return false;
-                }
-            }
-            i++;
-        }
-        return foundMatchingDay;
-    }
-
-    private boolean isTimeMatching(String time) {
-        if (time.equals("24h")) {
-            return true;
-        }
-        int currentHour = processor.getCurrentDateTime().getHour();
-        int currentMinute = processor.getCurrentDateTime().getMinute();
-        if (Pattern.matches(TIME_REGEX, time)) {
-            Matcher matcher = Pattern.compile(TIME_REGEX).matcher(time);
-            while (matcher.find()) {
-                if (currentHour == Integer.parseInt(matcher.group(1)) &&
-                        currentMinute == Integer.parseInt(matcher.group(2))) {
-                    isStart = true;
-                } else if (currentHour == Integer.parseInt(matcher.group(3)) &&
-                        currentMinute == Integer.parseInt(matcher.group(4))) {
-                    isEnd = true;
-                }
-                if (currentHour > Integer.parseInt(matcher.group(1)) &&
-                        currentHour < Integer.parseInt(matcher.group(3)) ||
-                        currentHour == Integer.parseInt(matcher.group(1)) &&
-                                currentMinute >= Integer.parseInt(matcher.group(2)) ||
-                        currentHour == Integer.parseInt(matcher.group(3)) &&
-                                currentMinute < Integer.parseInt(matcher.group(4))) {
-                    return true;
-                }
-            }
-        } else {
-            isErrorState = true;
-            error = error + "Wrong time format:" + time;
-        }
-        return false;
+    @Override
+    public ServerStateCommandProcessor.Action getHighestAction() {
+        return ServerStateCommandProcessor.Action.WORK_TIME;
     }
 
     @Subscribe
-    private static void register(ServerStateCommandProcessor processor) {
-        processor.register("All", DateTimeCommand.class);
-        processor.register("WD", DateTimeCommand.class);
-        processor.register("WE", DateTimeCommand.class);
-        processor.register("Mon", DateTimeCommand.class);
-        processor.register("Tue", DateTimeCommand.class);
-        processor.register("Wed", DateTimeCommand.class);
-        processor.register("Thu", DateTimeCommand.class);
-        processor.register("Fri", DateTimeCommand.class);
-        processor.register("Sat", DateTimeCommand.class);
-        processor.register("Sun", DateTimeCommand.class);
+    private void register(CommandRegistry.Builder registry) {
+        registry.register("All", this);
+        registry.register("WD", this);
+        registry.register("WE", this);
+        registry.register("Mon", this);
+        registry.register("Tue", this);
+        registry.register("Wed", this);
+        registry.register("Thu", this);
+        registry.register("Fri", this);
+        registry.register("Sat", this);
+        registry.register("Sun", this);
     }
 }
\ No newline at end of file
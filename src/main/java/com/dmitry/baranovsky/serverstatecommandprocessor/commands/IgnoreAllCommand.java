@@ -1,36 +1,33 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.commands;
 
-import com.dmitry.baranovsky.serverstatecommandprocessor.Command;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandContext;
 import com.dmitry.baranovsky.serverstatecommandprocessor.CommandModule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import com.dmitry.baranovsky.serverstatecommandprocessor.PrimitiveCommand;
 import com.dmitry.baranovsky.serverstatecommandprocessor.Result;
 import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
 import com.google.common.eventbus.Subscribe;
 
 /**
  * Implements the [OFF] command that returns IGNORE_ALL.
  */
 @CommandModule
-public class IgnoreAllCommand extends Command {
+public class IgnoreAllCommand extends PrimitiveCommand {
+    private static final Result IGNORE_ALL = new Result(ServerStateCommandProcessor.Action.IGNORE_ALL, "");
 
-    /**
-     * Standard IgnoreAllCommand constructor. Requires the current command processor instance.
-     *
-     * @param processor the command processor to be used.
-     */
-    public IgnoreAllCommand(ServerStateCommandProcessor processor) {
-        super(processor);
+    @Override
+    public Result execute(CommandContext context, ScheduleNode node) {
+        return IGNORE_ALL;
     }
 
     @Override
-    public Result execute(String argument) {
-        if (!argument.equals("OFF")) {
-            return new Result("Wrong command format: " + argument);
-        }
-        return new Result(ServerStateCommandProcessor.Action.IGNORE_ALL, "");
+    public ServerStateCommandProcessor.Action getHighestAction() {
+        return ServerStateCommandProcessor.Action.IGNORE_ALL;
     }
 
     @Subscribe
-    private static void register(ServerStateCommandProcessor processor) {
-        processor.register("OFF", IgnoreAllCommand.class);
+    private void register(CommandRegistry.Builder registry) {
+        registry.register("OFF", this);
     }
 }
\ No newline at end of file
@@ -1,37 +1,33 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.commands;
 
-import com.dmitry.baranovsky.serverstatecommandprocessor.Command;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandContext;
 import com.dmitry.baranovsky.serverstatecommandprocessor.CommandModule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import com.dmitry.baranovsky.serverstatecommandprocessor.PrimitiveCommand;
 import com.dmitry.baranovsky.serverstatecommandprocessor.Result;
 import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
 import com.google.common.eventbus.Subscribe;
 
 /**
  * Implements the [Manual] command that returns IGNORE_TIME.
  */
 @CommandModule
-public class IgnoreTimeCommand extends Command {
+public class IgnoreTimeCommand extends PrimitiveCommand {
+    private static final Result IGNORE_TIME = new Result(ServerStateCommandProcessor.Action.IGNORE_TIME, "");
 
-    /**
-     * Standard IgnoreTimeCommand constructor. Requires the current command processor instance.
-     *
-     * @param processor the command processor to be used.
-     */
-    public IgnoreTimeCommand(ServerStateCommandProcessor processor) {
-        super(processor);
+    @Override
+    public Result execute(CommandContext context, ScheduleNode node) {
+        return IGNORE_TIME;
     }
 
     @Override
-    public Result execute(String argument) {
-        if (!argument.equals("Manual")) {
-            return new Result("Wrong Manual command format: " + argument);
-        }
-        return new Result(ServerStateCommandProcessor.Action.IGNORE_TIME,
-                "");
+    public ServerStateCommandProcessor.Action getHighestAction() {
+        return ServerStateCommandProcessor.Action.IGNORE_TIME;
     }
 
     @Subscribe
-    private static void register(ServerStateCommandProcessor processor) {
-        processor.register("Manual", IgnoreTimeCommand.class);
+    private void register(CommandRegistry.Builder registry) {
+        registry.register("Manual", this);
     }
 }
\ No newline at end of file
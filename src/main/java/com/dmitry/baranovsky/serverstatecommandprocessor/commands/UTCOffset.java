@@ -2,50 +2,31 @@ package com.dmitry.baranovsky.serverstatecommandprocessor.commands;
 
 import com.dmitry.baranovsky.serverstatecommandprocessor.Command;
 import com.dmitry.baranovsky.serverstatecommandprocessor.CommandModule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import com.dmitry.baranovsky.serverstatecommandprocessor.EvaluationContext;
 import com.dmitry.baranovsky.serverstatecommandprocessor.Result;
 import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.UtcOffsetNode;
 import com.google.common.eventbus.Subscribe;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Implements the UTC shift commands.
  */
 @CommandModule
 public class UTCOffset extends Command {
-    private static final String UTC_REGEX = "^UTC([+\\-])(\\d+)$";
-
-    /**
-     * Standard UTCOffset command constructor. Requires the current command processor instance.
-     *
-     * @param processor the command processor to be used.
-     */
-    public UTCOffset(ServerStateCommandProcessor processor) {
-        super(processor);
-    }
 
     @Override
-    public Result execute(String argument) {
-        Matcher matcher = Pattern.compile(UTC_REGEX).matcher(argument);
-        if (matcher.find()) {
-            if (!matcher.matches()) {
-                return new Result("Wrong UTC command format: " + argument);
-            }
-            if (processor.getUTCshift() != 0) {
-                return new Result("Multiple UTC zone arguments");
-            }
-            if (matcher.group(1).charAt(0) == '+') {
-                processor.setUTCshift(Integer.parseInt(matcher.group(2)));
-            }
-            processor.setUTCshift(-Integer.parseInt(matcher.group(2)));
-            return new Result(ServerStateCommandProcessor.Action.NEUTRAL, "");
+    public Result execute(EvaluationContext context, ScheduleNode node) {
+        if (context.getUTCshift() != 0) {
+            return new Result("Multiple UTC zone arguments");
         }
-        return new Result("Wrong UTC command format: " + argument);
+        context.setUTCshift(((UtcOffsetNode) node).getShift());
+        return new Result(ServerStateCommandProcessor.Action.NEUTRAL, "");
     }
 
     @Subscribe
-    private static void register(ServerStateCommandProcessor processor) {
-        processor.registerConfig("UTC", UTCOffset.class);
+    private void register(CommandRegistry.Builder registry) {
+        registry.registerConfig("UTC", this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.reactive;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtRequest;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtResponse;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtTokenUtil;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtUserDetailsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * The authentication controller of the reactive web stack.
+ * Defines the /authenticate request for obtaining bearer tokens.
+ */
+@RestController
+@CrossOrigin
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthenticationController {
+    @Autowired
+    private ReactiveAuthenticationManager authenticationManager;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private JwtUserDetailsService jwtInMemoryUserDetailsService;
+
+    /**
+     * Authentication request that checks the given username, password pair.
+     * Generates a bearer token if successful.
+     *
+     * @param authenticationRequest the JSON with "username" and "password".
+     * @return the JSON with the generated token, or 401 if the credentials are invalid.
+     */
+    @RequestMapping(value = "/authenticate", method = RequestMethod.POST)
+    public Mono<ResponseEntity<JwtResponse>> createAuthenticationToken(@RequestBody JwtRequest authenticationRequest) {
+        String username = Objects.requireNonNull(authenticationRequest.getUsername());
+        String password = Objects.requireNonNull(authenticationRequest.getPassword());
+
+        // check the password against the repository, not against a cached user
+        jwtInMemoryUserDetailsService.invalidate(username);
+        return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password))
+                .map(authentication -> {
+                    String token = jwtTokenUtil.generateToken((UserDetails) authentication.getPrincipal());
+                    return ResponseEntity.ok(new JwtResponse(token));
+                })
+                .onErrorResume(AuthenticationException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build()));
+    }
+}
@@ -0,0 +1,135 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.reactive;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtTokenUtil;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtUserDetailsService;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The security configuration of the reactive web stack.
+ * <p>
+ * Requests are authenticated with the same bearer tokens as on the servlet stack.
+ * User lookups block on the repository, they run on a bounded scheduler of their own
+ * so that a slow database never occupies the event loop.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+    private static final String BEARER = "Bearer ";
+
+    /**
+     * Uses Netty even though Tomcat is on the class path for the servlet stack.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * @param threads     the maximum amount of threads doing user lookups.
+     * @param queuedTasks the maximum amount of lookups waiting for a thread.
+     * @return the scheduler for blocking user lookups.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler userLookupScheduler(@Value("${user-cache.lookup-threads:8}") int threads,
+                                         @Value("${user-cache.lookup-queue-size:1000}") int queuedTasks) {
+        return Schedulers.newBoundedElastic(threads, queuedTasks, "user-lookup");
+    }
+
+    @Bean
+    public ReactiveUserDetailsService reactiveUserDetailsService(JwtUserDetailsService userDetailsService,
+                                                                 Scheduler userLookupScheduler) {
+        return username -> Mono.fromCallable(() -> userDetailsService.loadUserByUsername(username))
+                .subscribeOn(userLookupScheduler);
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return new BCryptPasswordEncoder();
+    }
+
+    /**
+     * @return the authentication manager checking username, password pairs for /authenticate.
+     */
+    @Bean
+    public ReactiveAuthenticationManager passwordAuthenticationManager(ReactiveUserDetailsService userDetailsService,
+                                                                       PasswordEncoder passwordEncoder) {
+        UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
+                new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        return authenticationManager;
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, JwtTokenUtil jwtTokenUtil,
+                                                         ReactiveUserDetailsService userDetailsService) {
+        HttpStatusServerEntryPoint unauthorized = new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED);
+        AuthenticationWebFilter jwtFilter = new AuthenticationWebFilter(
+                jwtAuthenticationManager(jwtTokenUtil, userDetailsService));
+        jwtFilter.setServerAuthenticationConverter(exchange -> {
+            String header = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            if (header == null || !header.startsWith(BEARER)) {
+                return Mono.empty();
+            }
+            String token = header.substring(BEARER.length());
+            return Mono.just(new UsernamePasswordAuthenticationToken(token, token));
+        });
+        jwtFilter.setSecurityContextRepository(NoOpServerSecurityContextRepository.getInstance());
+        jwtFilter.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(unauthorized));
+        return http.csrf().disable()
+                .httpBasic().disable()
+                .formLogin().disable()
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .exceptionHandling().authenticationEntryPoint(unauthorized).and()
+                .authorizeExchange().pathMatchers("/authenticate").permitAll()
+                .anyExchange().authenticated().and()
+                .addFilterAt(jwtFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    /**
+     * Verifies the bearer token and loads the user it was issued for.
+     */
+    private static ReactiveAuthenticationManager jwtAuthenticationManager(JwtTokenUtil jwtTokenUtil,
+                                                                          ReactiveUserDetailsService userDetailsService) {
+        return authentication -> {
+            String token = (String) authentication.getCredentials();
+            String username;
+            try {
+                username = jwtTokenUtil.getUsernameFromToken(token);
+            } catch (JwtException | IllegalArgumentException e) {
+                return Mono.error(new BadCredentialsException("Invalid JWT Token", e));
+            }
+            return userDetailsService.findByUsername(username)
+                    .filter(userDetails -> jwtTokenUtil.validateToken(token, userDetails))
+                    .switchIfEmpty(Mono.error(new BadCredentialsException("Invalid JWT Token")))
+                    .map(userDetails -> new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities()));
+        };
+    }
+}
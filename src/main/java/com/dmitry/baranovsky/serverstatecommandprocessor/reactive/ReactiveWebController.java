@@ -0,0 +1,282 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.reactive;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.BatchProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.BinaryProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.BinaryProtocol;
+import com.dmitry.baranovsky.serverstatecommandprocessor.DecisionPublisher;
+import com.dmitry.baranovsky.serverstatecommandprocessor.FleetRegistry;
+import com.dmitry.baranovsky.serverstatecommandprocessor.ForecastProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.LintProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.SimulationProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.StreamProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The main controller of the reactive web stack.
+ * <p>
+ * Serves the same requests as {@link com.dmitry.baranovsky.serverstatecommandprocessor.WebController}
+ * without blocking the event loop: single inputs are evaluated in place,
+ * bulk inputs on the {@link BatchProcessor} pool.
+ * </p>
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebController {
+    /**
+     * The time after which a window of /process/stream lines that isn't full is evaluated.
+     */
+    private static final Duration WINDOW_TIMEOUT = Duration.ofMillis(10);
+    @Autowired
+    private ServerStateCommandProcessor processor;
+    @Autowired
+    private BatchProcessor batchProcessor;
+    @Autowired
+    private StreamProcessor streamProcessor;
+    @Autowired
+    private ForecastProcessor forecastProcessor;
+    @Autowired
+    private BinaryProcessor binaryProcessor;
+    @Autowired
+    private FleetRegistry fleetRegistry;
+    @Autowired
+    private DecisionPublisher decisionPublisher;
+    @Autowired
+    private SimulationProcessor simulationProcessor;
+    @Autowired
+    private LintProcessor lintProcessor;
+
+    /**
+     * Handles the /process request.
+     *
+     * @param input the JSON containing "Work Hours", "Current Time", "Launch Time",
+     *              "Time Zone", "Server State", "Patch Time".
+     * @return the JSON containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime".
+     */
+    @RequestMapping(value = "/process", method = RequestMethod.POST)
+    public Mono<Map<String, String>> process(@RequestBody Map<String, String> input) {
+        return Mono.fromSupplier(() -> processor.run(input));
+    }
+
+    /**
+     * Handles the /process request with a {@link BinaryProtocol} body.
+     *
+     * @param input the encoded input.
+     * @return the encoded result.
+     */
+    @RequestMapping(value = "/process", method = RequestMethod.POST,
+            consumes = BinaryProtocol.MEDIA_TYPE, produces = BinaryProtocol.MEDIA_TYPE)
+    public Mono<byte[]> processBinary(@RequestBody byte[] input) {
+        return Mono.fromSupplier(() -> binaryProcessor.run(input));
+    }
+
+    /**
+     * Handles the /process/batch request.
+     *
+     * @param inputs the JSON array of /process inputs.
+     * @return the JSON array of /process results in the order of the inputs.
+     */
+    @RequestMapping(value = "/process/batch", method = RequestMethod.POST)
+    public Mono<List<Map<String, String>>> processBatch(@RequestBody List<Map<String, String>> inputs) {
+        return Mono.defer(() -> Mono.fromFuture(batchProcessor.runAsync(inputs)));
+    }
+
+    /**
+     * Handles the /process/batch request with a {@link BinaryProtocol} body.
+     *
+     * @param inputs the encoded inputs.
+     * @return the encoded results in the order of the inputs.
+     */
+    @RequestMapping(value = "/process/batch", method = RequestMethod.POST,
+            consumes = BinaryProtocol.MEDIA_TYPE, produces = BinaryProtocol.MEDIA_TYPE)
+    public Mono<byte[]> processBatchBinary(@RequestBody byte[] inputs) {
+        return Mono.defer(() -> Mono.fromFuture(binaryProcessor.runBatchAsync(inputs)));
+    }
+
+    /**
+     * Handles the /process/stream request.
+     * <p>
+     * Input lines are evaluated in windows, a window is only requested from the client
+     * once the previous one has been written. A window that isn't full is evaluated after
+     * a short timeout, so a client that waits for its answers gets them.
+     * </p>
+     *
+     * @param lines the newline delimited JSON inputs.
+     * @return the newline delimited JSON results in the order of the inputs.
+     */
+    @RequestMapping(value = "/process/stream", method = RequestMethod.POST,
+            consumes = StreamProcessor.NDJSON, produces = StreamProcessor.NDJSON)
+    public Flux<String> processStream(@RequestBody Flux<String> lines) {
+        return lines.filter(line -> !line.isBlank())
+                .bufferTimeout(streamProcessor.getWindowSize(), WINDOW_TIMEOUT)
+                .concatMap(window -> Mono.fromFuture(streamProcessor.evaluate(window)))
+                .flatMapIterable(results -> results)
+                .map(result -> result + "\n");
+    }
+
+    /**
+     * Handles the /process/subscribe request.
+     * <p>
+     * Sends the current decision and then a "decision" event whenever the action changes.
+     * The subscription is cancelled when the client disconnects.
+     * </p>
+     *
+     * @param input       the /process input JSON, the "Current Time" is ignored.
+     * @param lastEventId the id of the last received event when reconnecting.
+     * @return the event stream of JSONs containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime"
+     * and "Time".
+     */
+    @RequestMapping(value = "/process/subscribe", method = RequestMethod.POST,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, String>>> subscribe(
+            @RequestBody Map<String, String> input,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return Flux.create(sink -> {
+            DecisionPublisher.Subscription subscription = decisionPublisher.subscribe(input, lastEventId,
+                    new DecisionPublisher.Listener() {
+                        @Override
+                        public void send(String id, Map<String, String> decision) throws IOException {
+                            if (sink.isCancelled()) {
+                                throw new IOException("The client is gone");
+                            }
+                            sink.next(ServerSentEvent.builder(decision).id(id).event("decision").build());
+                        }
+
+                        @Override
+                        public void heartbeat() throws IOException {
+                            if (sink.isCancelled()) {
+                                throw new IOException("The client is gone");
+                            }
+                            sink.next(ServerSentEvent.<Map<String, String>>builder().comment("heartbeat").build());
+                        }
+
+                        @Override
+                        public void complete() {
+                            sink.complete();
+                        }
+                    });
+            // disposing a sink that has already completed cancels at once
+            sink.onDispose(subscription::cancel);
+        });
+    }
+
+    /**
+     * Handles the /forecast request.
+     *
+     * @param input the /process input JSON, optionally with "Transitions" and "Horizon Days".
+     * @return the JSON containing "ErrorFlag", "ErrorMessage" and "Transitions".
+     */
+    @RequestMapping(value = "/forecast", method = RequestMethod.POST)
+    public Mono<Map<String, Object>> forecast(@RequestBody Map<String, String> input) {
+        return Mono.fromSupplier(() -> forecastProcessor.run(input)).subscribeOn(Schedulers.parallel());
+    }
+
+    /**
+     * Handles the /simulate request.
+     * <p>
+     * Replays the schedule over a date range, assuming the server follows every decision,
+     * and returns how long it would have been running.
+     * The simulation waits for the chunks simulated on its own pool, so it is run on a scheduler
+     * that may block.
+     * </p>
+     *
+     * @param input the /process input JSON without "Current Time", with "From" and "To".
+     * @return the JSON containing "ErrorFlag", "ErrorMessage", "UptimeSeconds", "Starts", "Stops" and "Days".
+     */
+    @RequestMapping(value = "/simulate", method = RequestMethod.POST)
+    public Mono<Map<String, Object>> simulate(@RequestBody Map<String, String> input) {
+        return Mono.fromSupplier(() -> simulationProcessor.run(input))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Handles the /lint request.
+     * <p>
+     * Validates work time strings without evaluating them, e.g. before a rollout.
+     * The strings are compiled on the pool of the {@link LintProcessor}, the call waiting for them
+     * is run on a scheduler that may block.
+     * </p>
+     *
+     * @param workTimes the JSON array of work time strings.
+     * @return the JSON array of JSONs containing "ErrorFlag", "ErrorMessage", "ErrorCode", "ErrorIndex"
+     * and "ErrorOffset", in the order of the work time strings.
+     */
+    @RequestMapping(value = "/lint", method = RequestMethod.POST)
+    public Mono<List<Map<String, String>>> lint(@RequestBody List<String> workTimes) {
+        return Mono.fromSupplier(() -> lintProcessor.run(workTimes)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Handles the /servers/{serverId} request that registers a server or replaces its record.
+     *
+     * @param serverId the server id.
+     * @param input    the JSON containing "Work Hours", "Time Zone", "Launch Time", "Server State", "Patch Time".
+     * @return the JSON containing "ErrorFlag" and "ErrorMessage".
+     */
+    @RequestMapping(value = "/servers/{serverId}", method = RequestMethod.PUT)
+    public Mono<Map<String, String>> putServer(@PathVariable String serverId,
+                                               @RequestBody Map<String, String> input) {
+        return Mono.fromSupplier(() -> fleetRegistry.put(serverId, input));
+    }
+
+    /**
+     * Handles the /servers/{serverId} request that returns a registered server.
+     *
+     * @param serverId the server id.
+     * @return the JSON containing "Work Hours", "Time Zone", "Launch Time", "Server State", "Patch Time".
+     */
+    @RequestMapping(value = "/servers/{serverId}", method = RequestMethod.GET)
+    public Mono<Map<String, String>> getServer(@PathVariable String serverId) {
+        return Mono.fromSupplier(() -> fleetRegistry.get(serverId));
+    }
+
+    /**
+     * Handles the /servers/{serverId} request that removes a registered server.
+     *
+     * @param serverId the server id.
+     * @return the JSON containing "ErrorFlag" and "ErrorMessage".
+     */
+    @RequestMapping(value = "/servers/{serverId}", method = RequestMethod.DELETE)
+    public Mono<Map<String, String>> deleteServer(@PathVariable String serverId) {
+        return Mono.fromSupplier(() -> fleetRegistry.remove(serverId));
+    }
+
+    /**
+     * Handles the /process/{serverId} request.
+     * <p>
+     * Evaluates a registered server like /process evaluates a full input.
+     * </p>
+     *
+     * @param serverId the server id.
+     * @param input    the JSON optionally containing "Server State" and "Current Time".
+     * @return the JSON containing "Action", "Reason", "ErrorFlag", "ErrorMessage", "LocalTime".
+     */
+    @RequestMapping(value = "/process/{serverId}", method = RequestMethod.POST,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<byte[]> processServer(@PathVariable String serverId,
+                                      @RequestBody(required = false) Map<String, String> input) {
+        return Mono.fromCallable(() -> {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+            fleetRegistry.process(serverId, input, output);
+            return output.toByteArray();
+        });
+    }
+}
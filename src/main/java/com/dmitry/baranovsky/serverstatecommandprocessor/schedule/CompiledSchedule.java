@@ -0,0 +1,150 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.Command;
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import com.dmitry.baranovsky.serverstatecommandprocessor.EvaluationContext;
+import com.dmitry.baranovsky.serverstatecommandprocessor.PrimitiveCommand;
+import com.dmitry.baranovsky.serverstatecommandprocessor.Result;
+import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.google.common.collect.ImmutableList;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A work time string that has been parsed once and can be evaluated many times.
+ * <p>
+ * Configuration commands are applied during compilation, only primary commands are kept.
+ * A schedule that failed to compile keeps its error message and position instead.
+ * <p>
+ * The brackets are also kept in the order of the highest action their command can return,
+ * so that the evaluation can stop once the remaining commands can't change the result.
+ */
+public final class CompiledSchedule {
+    @Getter
+    private final String workTime;
+    @Getter
+    private final List<Bracket> brackets;
+    /**
+     * The brackets ordered by the precedence of their highest action, ties in the order of the string,
+     * or null if a command may fail and every command has to run in order.
+     */
+    @Getter
+    private final List<Bracket> prioritizedBrackets;
+    @Getter
+    private final int UTCshift;
+    /**
+     * The union of all days and time period commands of the schedule.
+     */
+    @Getter
+    private final WeekBitmap bitmap;
+    @Getter
+    private final String error;
+    @Getter
+    private final ScheduleError errorCode;
+    @Getter
+    private final int errorIndex;
+    @Getter
+    private final int errorOffset;
+
+    private CompiledSchedule(String workTime, List<Bracket> brackets, int UTCshift, WeekBitmap bitmap,
+                             String error, ScheduleError errorCode, int errorIndex, int errorOffset) {
+        this.workTime = workTime;
+        this.brackets = brackets;
+        prioritizedBrackets = prioritize(brackets);
+        this.UTCshift = UTCshift;
+        this.bitmap = bitmap;
+        this.error = error;
+        this.errorCode = errorCode;
+        this.errorIndex = errorIndex;
+        this.errorOffset = errorOffset;
+    }
+
+    /**
+     * Parses the given work time string and applies the configuration commands.
+     *
+     * @param registry the registry to look up commands in.
+     * @param workTime the work time string e.g. [Mon-Fri 09:00-17:00][UTC+2].
+     * @return the compiled schedule, or a schedule containing the compilation error.
+     */
+    public static CompiledSchedule compile(CommandRegistry registry, String workTime) {
+        ScheduleParser parser = new ScheduleParser(workTime);
+        EvaluationContext configuration = new EvaluationContext();
+        ImmutableList.Builder<Bracket> brackets = ImmutableList.builder();
+        WeekBitmap bitmap = WeekBitmap.EMPTY;
+        int bracketCount = 0;
+        try {
+            while (parser.hasNext()) {
+                ScheduleNode node = parser.next();
+                Command configCommand = registry.getConfigCommand(node.getKeyword());
+                if (configCommand != null) {
+                    Result result = configCommand.execute(configuration, node);
+                    if (result.getAction() == ServerStateCommandProcessor.Action.ERROR) {
+                        return failed(workTime, result.getError(), ScheduleError.CONFIGURATION, node.getIndex(), node.getOffset());
+                    }
+                    continue;
+                }
+                PrimitiveCommand primaryCommand = registry.getCommand(node.getKeyword());
+                if (primaryCommand == null) {
+                    return failed(workTime, "Illegal command: " + node.getKeyword(), ScheduleError.UNKNOWN_COMMAND,
+                            node.getIndex(), node.getOffset());
+                }
+                brackets.add(new Bracket(primaryCommand, node, bracketCount++));
+                if (node instanceof DayTimeNode) {
+                    bitmap = bitmap.union(((DayTimeNode) node).getBitmap());
+                }
+            }
+        } catch (ScheduleParseException e) {
+            return failed(workTime, e.getMessage(), e.getCode(), e.getIndex(), e.getOffset());
+        }
+        return new CompiledSchedule(workTime, brackets.build(), configuration.getUTCshift(), bitmap, null, null, -1, -1);
+    }
+
+    private static CompiledSchedule failed(String workTime, String error, ScheduleError errorCode, int errorIndex,
+                                           int errorOffset) {
+        return new CompiledSchedule(workTime, ImmutableList.of(), 0, WeekBitmap.EMPTY, error, errorCode, errorIndex,
+                errorOffset);
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    private static List<Bracket> prioritize(List<Bracket> brackets) {
+        for (Bracket bracket : brackets) {
+            if (bracket.highestAction == ServerStateCommandProcessor.Action.ERROR) {
+                return null;
+            }
+        }
+        List<Bracket> prioritized = new ArrayList<>(brackets);
+        // the sort is stable, brackets of the same precedence keep their order
+        prioritized.sort(Comparator.comparingInt((Bracket bracket) -> bracket.highestAction.precedence).reversed());
+        return ImmutableList.copyOf(prioritized);
+    }
+
+    /**
+     * A primary command together with its parsed arguments.
+     */
+    public static final class Bracket {
+        @Getter
+        private final PrimitiveCommand command;
+        @Getter
+        private final ScheduleNode node;
+        /**
+         * The position of the bracket among the primary commands of the schedule.
+         */
+        @Getter
+        private final int index;
+        @Getter
+        private final ServerStateCommandProcessor.Action highestAction;
+
+        Bracket(PrimitiveCommand command, ScheduleNode node, int index) {
+            this.command = command;
+            this.node = node;
+            this.index = index;
+            highestAction = command.getHighestAction();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import lombok.Getter;
+
+import java.time.DayOfWeek;
+
+/**
+ * A parsed days and time period command, e.g. [Mon-Fri 09:00-17:00] or [WE 24h].
+ */
+public class DayTimeNode extends ScheduleNode {
+    @Getter
+    private final int dayMask;
+    @Getter
+    private final boolean allDay;
+    @Getter
+    private final int startHour;
+    @Getter
+    private final int startMinute;
+    @Getter
+    private final int endHour;
+    @Getter
+    private final int endMinute;
+    @Getter
+    private final WeekBitmap bitmap;
+
+    /**
+     * Creates a days and time period node.
+     * See {@link ScheduleNode} for the common arguments.
+     *
+     * @param dayMask     the matching days, bit n stands for the day with the value n + 1.
+     * @param allDay      true for the 24h time period.
+     * @param startHour   the work start hour.
+     * @param startMinute the work start minute.
+     * @param endHour     the work end hour.
+     * @param endMinute   the work end minute.
+     */
+    public DayTimeNode(String keyword, String argument, int index, int offset, int dayMask, boolean allDay,
+                       int startHour, int startMinute, int endHour, int endMinute) {
+        super(keyword, argument, index, offset);
+        this.dayMask = dayMask;
+        this.allDay = allDay;
+        this.startHour = startHour;
+        this.startMinute = startMinute;
+        this.endHour = endHour;
+        this.endMinute = endMinute;
+        this.bitmap = WeekBitmap.of(this);
+    }
+
+    public boolean isMatchingDay(DayOfWeek day) {
+        return (dayMask & 1 << day.ordinal()) != 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import lombok.Getter;
+
+/**
+ * A parsed out of scheduled hours command, e.g. [OSH 4].
+ */
+public class OutOfScheduledHoursNode extends ScheduleNode {
+    @Getter
+    private final int hours;
+
+    public OutOfScheduledHoursNode(String keyword, String argument, int index, int offset, int hours) {
+        super(keyword, argument, index, offset);
+        this.hours = hours;
+    }
+}
@@ -0,0 +1,223 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.commands.DateTimeCommand;
+import lombok.Getter;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+
+/**
+ * A "Patch Time" string that has been parsed once, e.g. [2 Wed 12:00] or [2 Wed 12:00][4 Sat 03:30].
+ * <p>
+ * Every window [n Day hh:mm] is the minute starting at hh:mm on the n-th given weekday of every month.
+ * Whether a minute is patch time is a lookup of its week of the month, weekday and minute of the day.
+ * The concrete patch minutes of a year are computed once per calendar and searched for the next patch time.
+ * <p>
+ * Like the work time, the patch time is matched against the time the schedule is evaluated in,
+ * so a calendar does not depend on the time zone and is shared by all servers using the same string.
+ */
+public final class PatchCalendar {
+    /**
+     * The calendar of servers without patch time.
+     */
+    public static final PatchCalendar EMPTY = new PatchCalendar("", new int[0], new int[0], new DayOfWeek[0], null);
+    /**
+     * Returned by {@link #next(long)} when there is no patch time.
+     */
+    public static final long NONE = Long.MAX_VALUE;
+    private static final int MAX_WEEK = 5;
+    private static final long MINUTES_PER_DAY = 1440;
+    @Getter
+    private final String patchTime;
+    @Getter
+    private final String error;
+    /**
+     * Sorted (week of the month - 1, minute of the week) keys of all windows.
+     */
+    private final int[] keys;
+    private final int[] weeks;
+    private final DayOfWeek[] days;
+    private final int[] minutes;
+    /**
+     * The last computed year, usually the only one ever needed.
+     */
+    private volatile YearTable yearTable;
+
+    private PatchCalendar(String patchTime, int[] weeks, int[] minutes, DayOfWeek[] days, String error) {
+        this.patchTime = patchTime;
+        this.weeks = weeks;
+        this.minutes = minutes;
+        this.days = days;
+        this.error = error;
+        keys = new int[weeks.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(weeks[i] - 1, days[i].ordinal(), minutes[i]);
+        }
+        Arrays.sort(keys);
+    }
+
+    private static final class YearTable {
+        private final int year;
+        /**
+         * The sorted epoch minutes of all patch windows of the year.
+         */
+        private final long[] starts;
+
+        YearTable(int year, long[] starts) {
+            this.year = year;
+            this.starts = starts;
+        }
+    }
+
+    /**
+     * Parses the given patch time string.
+     *
+     * @param patchTime one or more [n Day hh:mm] windows, n from 1 to 5, or an empty string.
+     * @return the calendar, or a calendar containing the error.
+     */
+    public static PatchCalendar compile(String patchTime) {
+        if (patchTime.isEmpty()) {
+            return EMPTY;
+        }
+        int count = 0;
+        for (int i = 0; i < patchTime.length(); i++) {
+            if (patchTime.charAt(i) == '[') {
+                count++;
+            }
+        }
+        int[] weeks = new int[count];
+        int[] minutes = new int[count];
+        DayOfWeek[] days = new DayOfWeek[count];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int end = patchTime.indexOf(']', position);
+            if (end < 0 || !parseWindow(patchTime, position, end, weeks, minutes, days, i)) {
+                return failed(patchTime);
+            }
+            position = end + 1;
+        }
+        if (position != patchTime.length()) {
+            return failed(patchTime);
+        }
+        return new PatchCalendar(patchTime, weeks, minutes, days, null);
+    }
+
+    /**
+     * Parses "[n Day hh:mm]" between the given positions, the hour may have one digit.
+     */
+    private static boolean parseWindow(String text, int start, int end, int[] weeks, int[] minutes, DayOfWeek[] days,
+                                       int index) {
+        int length = end - start + 1;
+        if (length != 13 && length != 12 || text.charAt(start) != '[' || text.charAt(start + 2) != ' '
+                || text.charAt(start + 6) != ' ' || text.charAt(end - 3) != ':') {
+            return false;
+        }
+        int week = text.charAt(start + 1) - '0';
+        DayOfWeek day = DateTimeCommand.DAYS.get(text.substring(start + 3, start + 6));
+        int hour = length == 12 ? digit(text, start + 7) : digit(text, start + 7) * 10 + digit(text, start + 8);
+        int minute = digit(text, end - 2) * 10 + digit(text, end - 1);
+        if (week < 1 || week > MAX_WEEK || day == null || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return false;
+        }
+        weeks[index] = week;
+        days[index] = day;
+        minutes[index] = hour * 60 + minute;
+        return true;
+    }
+
+    private static int digit(String text, int index) {
+        char c = text.charAt(index);
+        return c >= '0' && c <= '9' ? c - '0' : -100;
+    }
+
+    private static PatchCalendar failed(String patchTime) {
+        return new PatchCalendar(patchTime, new int[0], new int[0], new DayOfWeek[0], "Incorrect patch time");
+    }
+
+    private static int key(int weekIndex, int dayOfWeek, int minuteOfDay) {
+        return (weekIndex * 7 + dayOfWeek) * (int) MINUTES_PER_DAY + minuteOfDay;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * @return true if there are no patch windows.
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Checks whether the given minute is patch time.
+     *
+     * @param dayOfMonth  the day of the month starting with 1.
+     * @param dayOfWeek   the ordinal of the {@link DayOfWeek}, 0 for Monday.
+     * @param minuteOfDay minutes since 00:00.
+     * @return true if the minute starts a patch window.
+     */
+    public boolean contains(int dayOfMonth, int dayOfWeek, int minuteOfDay) {
+        int weekIndex = (dayOfMonth - 1) / 7;
+        return keys.length != 0 && weekIndex < MAX_WEEK
+                && Arrays.binarySearch(keys, key(weekIndex, dayOfWeek, minuteOfDay)) >= 0;
+    }
+
+    /**
+     * Finds the first patch window at or after the given minute.
+     *
+     * @param epochMinute the minute in the time the schedule is evaluated in, as minutes since the epoch.
+     * @return the epoch minute the window starts at or {@link #NONE}.
+     */
+    public long next(long epochMinute) {
+        if (keys.length == 0) {
+            return NONE;
+        }
+        long epochDay = Math.floorDiv(epochMinute, MINUTES_PER_DAY);
+        if (epochDay < LocalDate.MIN.toEpochDay() || epochDay > LocalDate.MAX.toEpochDay()) {
+            return NONE;
+        }
+        // every window with n <= 4 falls into every month and a fifth weekday into several months of every year
+        for (int year = LocalDate.ofEpochDay(epochDay).getYear(); year <= Year.MAX_VALUE; year++) {
+            long[] starts = starts(year);
+            int index = Arrays.binarySearch(starts, epochMinute);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index < starts.length) {
+                return starts[index];
+            }
+        }
+        return NONE;
+    }
+
+    private long[] starts(int year) {
+        YearTable table = yearTable;
+        if (table == null || table.year != year) {
+            table = new YearTable(year, computeStarts(year));
+            yearTable = table;
+        }
+        return table.starts;
+    }
+
+    private long[] computeStarts(int year) {
+        long[] starts = new long[weeks.length * 12];
+        int count = 0;
+        for (int month = 1; month <= 12; month++) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            for (int i = 0; i < weeks.length; i++) {
+                LocalDate day = yearMonth.atDay(1).with(TemporalAdjusters.dayOfWeekInMonth(weeks[i], days[i]));
+                if (day.getMonthValue() == month) {
+                    starts[count++] = day.toEpochDay() * MINUTES_PER_DAY + minutes[i];
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(starts, count);
+        Arrays.sort(result);
+        return result;
+    }
+}
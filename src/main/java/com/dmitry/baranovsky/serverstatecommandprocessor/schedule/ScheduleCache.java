@@ -0,0 +1,68 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.CommandRegistry;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A bounded least recently used cache of compiled schedules keyed by the raw work time string.
+ * <p>
+ * Schedules that failed to compile are cached as well, so malformed strings fail fast.
+ */
+public class ScheduleCache {
+    /**
+     * The amount of schedules kept when no size is configured.
+     */
+    public static final long DEFAULT_SIZE = 10_000;
+    private final LoadingCache<String, CompiledSchedule> cache;
+
+    /**
+     * Creates a cache of the given size.
+     *
+     * @param registry    the registry to compile schedules with.
+     * @param maximumSize the maximum amount of cached schedules.
+     */
+    public ScheduleCache(CommandRegistry registry, long maximumSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build(new CacheLoader<String, CompiledSchedule>() {
+                    @Override
+                    public CompiledSchedule load(String workTime) {
+                        return CompiledSchedule.compile(registry, workTime);
+                    }
+                });
+    }
+
+    /**
+     * Returns the compiled schedule for the given work time string, compiling it on a miss.
+     *
+     * @param workTime the work time string.
+     * @return the compiled schedule, possibly a failed one.
+     */
+    public CompiledSchedule get(String workTime) {
+        return cache.getUnchecked(workTime);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long hitCount() {
+        return stats().hitCount();
+    }
+
+    public long missCount() {
+        return stats().missCount();
+    }
+
+    public long evictionCount() {
+        return stats().evictionCount();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
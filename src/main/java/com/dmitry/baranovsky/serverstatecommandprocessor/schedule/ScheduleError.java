@@ -0,0 +1,43 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+/**
+ * The kinds of errors a work time string can contain, independent of the time it is evaluated at.
+ */
+public enum ScheduleError {
+    /**
+     * The work time string is missing or empty.
+     */
+    EMPTY,
+    /**
+     * A command does not start with '['.
+     */
+    MISSING_BRACKET,
+    /**
+     * The keyword is not a registered command.
+     */
+    UNKNOWN_COMMAND,
+    /**
+     * The arguments of a command don't match its format.
+     */
+    COMMAND_FORMAT,
+    /**
+     * A day of week of a days and time period command is not valid.
+     */
+    DAY_OF_WEEK,
+    /**
+     * A time or time period is not valid.
+     */
+    TIME_FORMAT,
+    /**
+     * A days and time period command has more than one period.
+     */
+    UNEXPECTED_ARGUMENT,
+    /**
+     * A configuration command like [UTC+2] could not be applied.
+     */
+    CONFIGURATION,
+    /**
+     * The string contains no command that decides an action, so it can never be evaluated.
+     */
+    NO_RESULT
+}
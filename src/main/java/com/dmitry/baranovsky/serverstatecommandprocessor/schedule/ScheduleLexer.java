@@ -0,0 +1,165 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+/**
+ * A single pass tokenizer for work time strings.
+ * <p>
+ * The lexer does not allocate tokens, the current token is described by its
+ * type and its start and end positions in the source string.
+ */
+public class ScheduleLexer {
+    private final String source;
+    private TokenType type;
+    private int start;
+    private int end;
+
+    /**
+     * Creates a lexer positioned on the first token of the given string.
+     *
+     * @param source the work time string.
+     */
+    public ScheduleLexer(String source) {
+        this.source = source;
+        reset(0);
+    }
+
+    /**
+     * Moves the lexer to the token starting at the given position.
+     *
+     * @param position the position in the source string.
+     */
+    public void reset(int position) {
+        end = position;
+        next();
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return the type of the new current token.
+     */
+    public TokenType next() {
+        start = end;
+        if (start >= source.length()) {
+            type = TokenType.END;
+            return type;
+        }
+        char c = source.charAt(start);
+        end = start + 1;
+        if (isAtomChar(c)) {
+            while (end < source.length() && isAtomChar(source.charAt(end))) {
+                end++;
+            }
+            type = TokenType.ATOM;
+        } else if (isWhitespace(c)) {
+            while (end < source.length() && isWhitespace(source.charAt(end))) {
+                end++;
+            }
+            type = TokenType.SPACE;
+        } else {
+            switch (c) {
+                case '[':
+                    type = TokenType.OPEN;
+                    break;
+                case ']':
+                    type = TokenType.CLOSE;
+                    break;
+                case ':':
+                    type = TokenType.COLON;
+                    break;
+                case ',':
+                    type = TokenType.COMMA;
+                    break;
+                case '-':
+                    type = TokenType.DASH;
+                    break;
+                case '+':
+                    type = TokenType.PLUS;
+                    break;
+                default:
+                    type = TokenType.OTHER;
+            }
+        }
+        return type;
+    }
+
+    public TokenType type() {
+        return type;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * @return the text of the current token.
+     */
+    public String text() {
+        return source.substring(start, end);
+    }
+
+    /**
+     * Compares the current token with the given text without allocating.
+     *
+     * @param text the expected text.
+     * @return true if the current token consists of exactly the given text.
+     */
+    public boolean matches(String text) {
+        return text.length() == end - start && source.regionMatches(start, text, 0, text.length());
+    }
+
+    /**
+     * Parses the current token as an unsigned decimal number.
+     *
+     * @param maxDigits the maximum amount of digits allowed.
+     * @return the number or -1 if the token is not a number of at most maxDigits digits.
+     */
+    public int number(int maxDigits) {
+        if (type != TokenType.ATOM || end - start > maxDigits) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isAtomChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+    }
+
+    /**
+     * Matches the characters of the regex {@code \s} class.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Types of work time string tokens.
+     */
+    public enum TokenType {
+        OPEN,
+        CLOSE,
+        ATOM,
+        COLON,
+        COMMA,
+        DASH,
+        PLUS,
+        SPACE,
+        OTHER,
+        END
+    }
+}
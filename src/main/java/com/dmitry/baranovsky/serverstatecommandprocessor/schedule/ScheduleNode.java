@@ -0,0 +1,35 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import lombok.Getter;
+
+/**
+ * A parsed work time command, e.g. [Manual].
+ * <p>
+ * Commands with arguments are represented by subclasses holding the parsed values.
+ * Commands unknown to the parser keep only their raw argument.
+ */
+public class ScheduleNode {
+    @Getter
+    private final String keyword;
+    @Getter
+    private final String argument;
+    @Getter
+    private final int index;
+    @Getter
+    private final int offset;
+
+    /**
+     * Creates a command node.
+     *
+     * @param keyword  the command key, e.g. "Mon" for [Mon-Fri 09:00-17:00].
+     * @param argument the command text between the brackets.
+     * @param index    the index of the command in the work time string.
+     * @param offset   the position of the opening bracket in the work time string.
+     */
+    public ScheduleNode(String keyword, String argument, int index, int offset) {
+        this.keyword = keyword;
+        this.argument = argument;
+        this.index = index;
+        this.offset = offset;
+    }
+}
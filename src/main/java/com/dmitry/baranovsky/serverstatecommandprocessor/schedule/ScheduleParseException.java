@@ -0,0 +1,31 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a work time string does not match the command grammar.
+ */
+public class ScheduleParseException extends Exception {
+    private static final long serialVersionUID = 3216548876501236147L;
+    @Getter
+    private final ScheduleError code;
+    @Getter
+    private final int index;
+    @Getter
+    private final int offset;
+
+    /**
+     * Creates a parse error.
+     *
+     * @param code    the kind of the error.
+     * @param message the error message as returned in ErrorMessage.
+     * @param index   the index of the command containing the error.
+     * @param offset  the position of the error in the work time string.
+     */
+    public ScheduleParseException(ScheduleError code, String message, int index, int offset) {
+        super(message);
+        this.code = code;
+        this.index = index;
+        this.offset = offset;
+    }
+}
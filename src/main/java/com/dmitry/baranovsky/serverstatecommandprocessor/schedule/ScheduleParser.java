@@ -0,0 +1,348 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleLexer.TokenType;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recursive descent parser for work time strings.
+ * <p>
+ * Parses the built-in commands: days and time periods ([Mon-Fri 09:00-17:00], [WD 24h]),
+ * [24h], [OFF], [Manual], [OSH n], [UOD hh:mm] and [UTC+n].
+ * Brackets with any other keyword are kept as plain {@link ScheduleNode}s.
+ */
+public class ScheduleParser {
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final int ALL_DAYS = 0b1111111;
+    private static final int WORK_DAYS = 0b0011111;
+    private static final int WEEKEND = 0b1100000;
+    private final String workTime;
+    private final ScheduleLexer lexer;
+    private int index = 0;
+
+    /**
+     * Creates a parser positioned on the first command of the given string.
+     *
+     * @param workTime the work time string.
+     */
+    public ScheduleParser(String workTime) {
+        this.workTime = workTime;
+        lexer = new ScheduleLexer(workTime);
+    }
+
+    /**
+     * Parses all commands of the given work time string.
+     *
+     * @param workTime the work time string.
+     * @return the parsed commands in order of appearance.
+     * @throws ScheduleParseException if the string does not match the command grammar.
+     */
+    public static List<ScheduleNode> parse(String workTime) throws ScheduleParseException {
+        ScheduleParser parser = new ScheduleParser(workTime);
+        List<ScheduleNode> nodes = new ArrayList<>();
+        while (parser.hasNext()) {
+            nodes.add(parser.next());
+        }
+        return nodes;
+    }
+
+    public boolean hasNext() {
+        return lexer.type() != TokenType.END;
+    }
+
+    /**
+     * Parses the next command.
+     *
+     * @return the parsed command.
+     * @throws ScheduleParseException if the command does not match the command grammar.
+     */
+    public ScheduleNode next() throws ScheduleParseException {
+        int offset = lexer.start();
+        if (lexer.type() != TokenType.OPEN) {
+            throw error(ScheduleError.MISSING_BRACKET, "No '[' found at command origin: " + workTime, offset);
+        }
+        int argumentStart = lexer.end();
+        while (!isKeywordDelimiter(lexer.next())) {
+            // the keyword runs until the first whitespace, '+', ',' or '-'
+        }
+        String keyword = workTime.substring(argumentStart, lexer.start());
+        ScheduleNode node;
+        switch (keyword) {
+            case "All":
+            case "WD":
+            case "WE":
+            case "Mon":
+            case "Tue":
+            case "Wed":
+            case "Thu":
+            case "Fri":
+            case "Sat":
+            case "Sun":
+                node = parseDayTime(keyword, argumentStart, offset);
+                break;
+            case "24h":
+            case "OFF":
+                expectEnd("Wrong command format: ", argumentStart);
+                node = new ScheduleNode(keyword, argument(argumentStart), index, offset);
+                break;
+            case "Manual":
+                expectEnd("Wrong Manual command format: ", argumentStart);
+                node = new ScheduleNode(keyword, argument(argumentStart), index, offset);
+                break;
+            case "OSH":
+                node = parseOutOfScheduledHours(keyword, argumentStart, offset);
+                break;
+            case "UOD":
+                node = parseUpOnDemand(keyword, argumentStart, offset);
+                break;
+            case "UTC":
+                node = parseUtcOffset(keyword, argumentStart, offset);
+                break;
+            default:
+                while (lexer.type() != TokenType.CLOSE && lexer.type() != TokenType.END) {
+                    lexer.next();
+                }
+                node = new ScheduleNode(keyword, argument(argumentStart), index, offset);
+        }
+        if (lexer.type() == TokenType.CLOSE) {
+            lexer.next();
+        }
+        index++;
+        return node;
+    }
+
+    private ScheduleNode parseDayTime(String keyword, int argumentStart, int offset) throws ScheduleParseException {
+        int listed = 0;
+        int dayMask;
+        int chunkStart = argumentStart;
+        int dayEnd = lexer.start();
+        // leading day lists with whitespace, e.g. 'Mon, Tue, Wed'
+        while (lexer.type() == TokenType.COMMA && isChunkEnd(peekType())) {
+            listed |= day(chunkStart, dayEnd);
+            lexer.next();
+            if (lexer.type() != TokenType.SPACE) {
+                throw error(ScheduleError.TIME_FORMAT, "Wrong time format:" + chunk(chunkStart), chunkStart);
+            }
+            lexer.next();
+            chunkStart = lexer.start();
+            if (lexer.type() != TokenType.ATOM) {
+                throw error(ScheduleError.DAY_OF_WEEK, "Illegal day of week:" + chunk(chunkStart), chunkStart);
+            }
+            dayEnd = lexer.end();
+            lexer.next();
+        }
+        if (lexer.type() == TokenType.COMMA) {
+            // a set of days without whitespace, e.g. 'Mon,Tue,Wed'
+            dayMask = listed | day(chunkStart, dayEnd);
+            do {
+                int dayStart = lexer.next() == TokenType.ATOM ? lexer.start() : -1;
+                if (dayStart < 0) {
+                    throw error(ScheduleError.DAY_OF_WEEK, "Illegal day of week:" + chunk(chunkStart), chunkStart);
+                }
+                dayMask |= day(dayStart, lexer.end());
+            } while (lexer.next() == TokenType.COMMA);
+        } else if (lexer.type() == TokenType.DASH) {
+            // a day period, e.g. 'Mon-Fri'
+            int first = dayOrdinal(chunkStart, dayEnd);
+            int last = lexer.next() == TokenType.ATOM ? dayOrdinal(lexer.start(), lexer.end()) : -1;
+            if (first < 0 || last < 0) {
+                throw error(ScheduleError.DAY_OF_WEEK, "Illegal day of week:" + chunk(chunkStart), chunkStart);
+            }
+            dayMask = 0;
+            for (int i = first; i <= last; i++) {
+                dayMask |= 1 << i;
+            }
+            lexer.next();
+        } else if (isChunkEnd(lexer.type())) {
+            // a single day, e.g. 'Tue', 'WD'
+            if (isText(chunkStart, dayEnd, "All")) {
+                dayMask = ALL_DAYS;
+            } else if (isText(chunkStart, dayEnd, "WD")) {
+                dayMask = WORK_DAYS | listed;
+            } else if (isText(chunkStart, dayEnd, "WE")) {
+                dayMask = WEEKEND | listed;
+            } else {
+                dayMask = day(chunkStart, dayEnd);
+            }
+        } else {
+            throw error(ScheduleError.DAY_OF_WEEK, "Illegal day of week:" + chunk(chunkStart), chunkStart);
+        }
+        if (!isChunkEnd(lexer.type())) {
+            throw error(ScheduleError.DAY_OF_WEEK, "Illegal day of week:" + chunk(chunkStart), chunkStart);
+        }
+        if (lexer.type() != TokenType.SPACE) {
+            throw error(ScheduleError.TIME_FORMAT, "Wrong time format:" + chunk(chunkStart), chunkStart);
+        }
+        lexer.next();
+        // the time period, e.g. '09:00-17:00' or '24h'
+        int timeStart = lexer.start();
+        if (lexer.matches("24h")) {
+            lexer.next();
+            expectArgumentEnd(timeStart);
+            return new DayTimeNode(keyword, argument(argumentStart), index, offset, dayMask, true, 0, 0, 0, 0);
+        }
+        int startHour = hour();
+        int startMinute = lexer.next() == TokenType.COLON ? minute() : -1;
+        int endHour = lexer.next() == TokenType.DASH && lexer.next() == TokenType.ATOM ? hour() : -1;
+        int endMinute = lexer.next() == TokenType.COLON ? minute() : -1;
+        lexer.next();
+        if (startHour < 0 || startMinute < 0 || endHour < 0 || endMinute < 0 || !isChunkEnd(lexer.type())) {
+            throw error(ScheduleError.TIME_FORMAT, "Wrong time format:" + chunk(timeStart), timeStart);
+        }
+        expectArgumentEnd(timeStart);
+        return new DayTimeNode(keyword, argument(argumentStart), index, offset, dayMask, false,
+                startHour, startMinute, endHour, endMinute);
+    }
+
+    private ScheduleNode parseOutOfScheduledHours(String keyword, int argumentStart, int offset)
+            throws ScheduleParseException {
+        int hours = isSingleSpace() ? lexer.number(1) : -1;
+        lexer.next();
+        if (hours < 0) {
+            throw error(ScheduleError.COMMAND_FORMAT, "Wrong OSH command format: " + argument(argumentStart), offset);
+        }
+        expectEnd("Wrong OSH command format: ", argumentStart);
+        return new OutOfScheduledHoursNode(keyword, argument(argumentStart), index, offset, hours);
+    }
+
+    private ScheduleNode parseUpOnDemand(String keyword, int argumentStart, int offset)
+            throws ScheduleParseException {
+        int hour = isSingleSpace() ? hour() : -1;
+        int minute = lexer.next() == TokenType.COLON ? minute() : -1;
+        lexer.next();
+        if (hour < 0 || minute < 0) {
+            throw error(ScheduleError.COMMAND_FORMAT, "Wrong UOD command format: " + argument(argumentStart), offset);
+        }
+        expectEnd("Wrong UOD command format: ", argumentStart);
+        return new UpOnDemandNode(keyword, argument(argumentStart), index, offset, hour, minute);
+    }
+
+    private ScheduleNode parseUtcOffset(String keyword, int argumentStart, int offset)
+            throws ScheduleParseException {
+        TokenType sign = lexer.type();
+        int hours = sign == TokenType.PLUS || sign == TokenType.DASH ? nextNumber(9) : -1;
+        lexer.next();
+        if (hours < 0) {
+            throw error(ScheduleError.COMMAND_FORMAT, "Wrong UTC command format: " + argument(argumentStart), offset);
+        }
+        expectEnd("Wrong UTC command format: ", argumentStart);
+        // both [UTC+n] and [UTC-n] shift by -n hours, existing schedules rely on it
+        return new UtcOffsetNode(keyword, argument(argumentStart), index, offset, -hours);
+    }
+
+    /**
+     * Moves past a single space and returns true if the current token is one.
+     */
+    private boolean isSingleSpace() {
+        if (lexer.type() == TokenType.SPACE && lexer.matches(" ")) {
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    private int nextNumber(int maxDigits) {
+        lexer.next();
+        return lexer.number(maxDigits);
+    }
+
+    /**
+     * Reads an hour in the 0-23 range with an optional leading zero from the current token.
+     */
+    private int hour() {
+        int hour = lexer.number(2);
+        return hour <= 23 ? hour : -1;
+    }
+
+    /**
+     * Reads a two digit minute from the current token, moving to it first.
+     */
+    private int minute() {
+        int minute = lexer.next() == TokenType.ATOM && lexer.length() == 2 ? lexer.number(2) : -1;
+        return minute <= 59 ? minute : -1;
+    }
+
+    private void expectEnd(String message, int argumentStart) throws ScheduleParseException {
+        if (lexer.type() != TokenType.CLOSE && lexer.type() != TokenType.END) {
+            throw error(ScheduleError.COMMAND_FORMAT, message + argument(argumentStart), lexer.start());
+        }
+    }
+
+    /**
+     * Checks that nothing but whitespace follows the time period.
+     */
+    private void expectArgumentEnd(int timeStart) throws ScheduleParseException {
+        if (lexer.type() == TokenType.SPACE) {
+            lexer.next();
+        }
+        if (lexer.type() != TokenType.CLOSE && lexer.type() != TokenType.END) {
+            throw error(ScheduleError.UNEXPECTED_ARGUMENT, "Unexpected argument after " + chunk(timeStart) + ": " + chunk(lexer.start()),
+                    lexer.start());
+        }
+    }
+
+    private TokenType peekType() {
+        int end = lexer.end();
+        if (end >= workTime.length()) {
+            return TokenType.END;
+        }
+        char c = workTime.charAt(end);
+        if (c == ']') {
+            return TokenType.CLOSE;
+        }
+        return ScheduleLexer.isWhitespace(c) ? TokenType.SPACE : TokenType.OTHER;
+    }
+
+    private int day(int start, int end) throws ScheduleParseException {
+        int ordinal = dayOrdinal(start, end);
+        if (ordinal < 0) {
+            throw error(ScheduleError.DAY_OF_WEEK, "Illegal day of week:" + workTime.substring(start, end), start);
+        }
+        return 1 << ordinal;
+    }
+
+    private int dayOrdinal(int start, int end) {
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (isText(start, end, DAY_NAMES[i])) {
+                return DayOfWeek.of(i + 1).ordinal();
+            }
+        }
+        return -1;
+    }
+
+    private boolean isText(int start, int end, String text) {
+        return end - start == text.length() && workTime.regionMatches(start, text, 0, text.length());
+    }
+
+    private static boolean isChunkEnd(TokenType type) {
+        return type == TokenType.SPACE || type == TokenType.CLOSE || type == TokenType.END;
+    }
+
+    private static boolean isKeywordDelimiter(TokenType type) {
+        return type == TokenType.SPACE || type == TokenType.PLUS || type == TokenType.COMMA
+                || type == TokenType.DASH || type == TokenType.CLOSE || type == TokenType.END;
+    }
+
+    /**
+     * Returns the whitespace separated part of the argument starting at the given position.
+     */
+    private String chunk(int start) {
+        int end = start;
+        while (end < workTime.length() && workTime.charAt(end) != ']'
+                && !ScheduleLexer.isWhitespace(workTime.charAt(end))) {
+            end++;
+        }
+        return workTime.substring(start, end);
+    }
+
+    private String argument(int argumentStart) {
+        int end = workTime.indexOf(']', argumentStart);
+        return workTime.substring(argumentStart, end < 0 ? workTime.length() : end);
+    }
+
+    private ScheduleParseException error(ScheduleError code, String message, int position) {
+        return new ScheduleParseException(code, message, index, position);
+    }
+}
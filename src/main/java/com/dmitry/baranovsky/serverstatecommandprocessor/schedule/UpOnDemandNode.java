@@ -0,0 +1,19 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import lombok.Getter;
+
+/**
+ * A parsed up on demand command, e.g. [UOD 18:00].
+ */
+public class UpOnDemandNode extends ScheduleNode {
+    @Getter
+    private final int hour;
+    @Getter
+    private final int minute;
+
+    public UpOnDemandNode(String keyword, String argument, int index, int offset, int hour, int minute) {
+        super(keyword, argument, index, offset);
+        this.hour = hour;
+        this.minute = minute;
+    }
+}
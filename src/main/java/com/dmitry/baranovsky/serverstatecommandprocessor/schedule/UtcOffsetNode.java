@@ -0,0 +1,19 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import lombok.Getter;
+
+/**
+ * A parsed UTC shift command, e.g. [UTC+2].
+ */
+public class UtcOffsetNode extends ScheduleNode {
+    /**
+     * The hours added to the current time, -n for both [UTC+n] and [UTC-n].
+     */
+    @Getter
+    private final int shift;
+
+    public UtcOffsetNode(String keyword, String argument, int index, int offset, int shift) {
+        super(keyword, argument, index, offset);
+        this.shift = shift;
+    }
+}
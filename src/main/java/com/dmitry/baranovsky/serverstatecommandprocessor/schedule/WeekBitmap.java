@@ -0,0 +1,137 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.schedule;
+
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+
+/**
+ * Work time, start time and end time of a schedule as minute-of-week bitsets.
+ * <p>
+ * Bit n stands for the n-th minute of the week starting at Monday 00:00,
+ * so checking a point in time is a single bit test.
+ * Instances are immutable.
+ */
+public final class WeekBitmap {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    public static final WeekBitmap EMPTY = new WeekBitmap(new BitSet(), new BitSet(), new BitSet());
+    private final BitSet work;
+    private final BitSet start;
+    private final BitSet end;
+
+    private WeekBitmap(BitSet work, BitSet start, BitSet end) {
+        this.work = work;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Compiles a days and time period command.
+     * <p>
+     * Reproduces the time matching of the command: the start minute is a start edge,
+     * the end minute is only an end edge when it falls inside the matching time,
+     * which is the case for periods starting and ending in the same hour.
+     *
+     * @param node the parsed command.
+     * @return the bitmap of the command.
+     */
+    public static WeekBitmap of(DayTimeNode node) {
+        BitSet work = new BitSet(MINUTES_PER_WEEK);
+        BitSet start = new BitSet(MINUTES_PER_WEEK);
+        BitSet end = new BitSet(MINUTES_PER_WEEK);
+        for (int day = 0; day < 7; day++) {
+            if ((node.getDayMask() & 1 << day) == 0) {
+                continue;
+            }
+            int dayStart = day * MINUTES_PER_DAY;
+            if (node.isAllDay()) {
+                work.set(dayStart, dayStart + MINUTES_PER_DAY);
+                continue;
+            }
+            for (int hour = 0; hour < 24; hour++) {
+                for (int minute = 0; minute < 60; minute++) {
+                    if (!isTimeMatching(node, hour, minute)) {
+                        continue;
+                    }
+                    int minuteOfWeek = dayStart + hour * 60 + minute;
+                    work.set(minuteOfWeek);
+                    if (hour == node.getStartHour() && minute == node.getStartMinute()) {
+                        start.set(minuteOfWeek);
+                    } else if (hour == node.getEndHour() && minute == node.getEndMinute()) {
+                        end.set(minuteOfWeek);
+                    }
+                }
+            }
+        }
+        return new WeekBitmap(work, start, end);
+    }
+
+    private static boolean isTimeMatching(DayTimeNode node, int hour, int minute) {
+        return hour > node.getStartHour() && hour < node.getEndHour() ||
+                hour == node.getStartHour() && minute >= node.getStartMinute() ||
+                hour == node.getEndHour() && minute < node.getEndMinute();
+    }
+
+    /**
+     * @param dateTime the point in time.
+     * @return the minute of the week of the given time, 0 is Monday 00:00.
+     */
+    public static int minuteOfWeek(ZonedDateTime dateTime) {
+        return dateTime.getDayOfWeek().ordinal() * MINUTES_PER_DAY + dateTime.getHour() * 60 + dateTime.getMinute();
+    }
+
+    /**
+     * Combines two bitmaps, a minute is set if it is set in either of them.
+     *
+     * @param other the bitmap to add.
+     * @return a new bitmap.
+     */
+    public WeekBitmap union(WeekBitmap other) {
+        BitSet work = (BitSet) this.work.clone();
+        BitSet start = (BitSet) this.start.clone();
+        BitSet end = (BitSet) this.end.clone();
+        work.or(other.work);
+        start.or(other.start);
+        end.or(other.end);
+        return new WeekBitmap(work, start, end);
+    }
+
+    public boolean isWorkTime(int minuteOfWeek) {
+        return work.get(minuteOfWeek);
+    }
+
+    public boolean isStart(int minuteOfWeek) {
+        return start.get(minuteOfWeek);
+    }
+
+    public boolean isEnd(int minuteOfWeek) {
+        return end.get(minuteOfWeek);
+    }
+
+    /**
+     * @return a copy of the work time bitset.
+     */
+    public BitSet workSet() {
+        return (BitSet) work.clone();
+    }
+
+    /**
+     * @return a copy of the start edge bitset.
+     */
+    public BitSet startSet() {
+        return (BitSet) start.clone();
+    }
+
+    /**
+     * @return a copy of the end edge bitset.
+     */
+    public BitSet endSet() {
+        return (BitSet) end.clone();
+    }
+
+    /**
+     * @return the amount of work minutes in a week.
+     */
+    public int workMinutes() {
+        return work.cardinality();
+    }
+}
@@ -1,6 +1,7 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -16,6 +17,7 @@ import java.util.Objects;
  * Defines the /authenticate request for obtaining bearer tokens.
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @CrossOrigin
 public class JwtAuthenticationController {
     @Autowired
@@ -53,6 +55,8 @@ public class JwtAuthenticationController {
         Objects.requireNonNull(username);
         Objects.requireNonNull(password);
 
+        // check the password against the repository, not against a cached user
+        jwtInMemoryUserDetailsService.invalidate(username);
         try {
             authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
         } catch (DisabledException e) {
@@ -1,21 +1,35 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Clock;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Utility class for working with tokens.
+ * <p>
+ * Tokens are verified by a single shared parser. The claims of verified tokens are cached
+ * by the SHA-256 digest of the token until the token expires, so repeated requests
+ * with the same token are not verified again.
  */
 @Component
 public class JwtTokenUtil implements Serializable {
@@ -24,8 +38,16 @@ public class JwtTokenUtil implements Serializable {
 
     public static final long JWT_TOKEN_VALIDITY = 5 * 60 * 60;
 
+    public static final long DEFAULT_CLAIMS_CACHE_SIZE = 10_000;
+
     private final SecretKey key;
 
+    private final transient JwtParser parser;
+
+    private final transient Cache<HashCode, Claims> claimsCache;
+
+    private final transient Clock clock;
+
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
     }
@@ -39,7 +61,28 @@ public class JwtTokenUtil implements Serializable {
     }
 
     public JwtTokenUtil() {
+        this(DEFAULT_CLAIMS_CACHE_SIZE);
+    }
+
+    /**
+     * @param claimsCacheSize the maximum amount of verified tokens to keep.
+     */
+    @Autowired
+    public JwtTokenUtil(@Value("${jwt.claims-cache-size:" + DEFAULT_CLAIMS_CACHE_SIZE + "}") long claimsCacheSize) {
+        this(claimsCacheSize, Date::new);
+    }
+
+    /**
+     * @param clock supplies the current time for issuing and verifying tokens.
+     */
+    JwtTokenUtil(long claimsCacheSize, Clock clock) {
+        this.clock = clock;
         key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        parser = Jwts.parserBuilder().setSigningKey(key).setClock(clock).build();
+        claimsCache = CacheBuilder.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfterWrite(JWT_TOKEN_VALIDITY, TimeUnit.SECONDS)
+                .build();
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
@@ -48,12 +91,24 @@ public class JwtTokenUtil implements Serializable {
     }
 
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        HashCode digest = Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+        Claims claims = claimsCache.getIfPresent(digest);
+        if (claims != null) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null || expiration.after(clock.now())) {
+                return claims;
+            }
+            // parsing the expired token again throws the usual ExpiredJwtException
+            claimsCache.invalidate(digest);
+        }
+        claims = parser.parseClaimsJws(token).getBody();
+        claimsCache.put(digest, claims);
+        return claims;
     }
 
     private Boolean isTokenExpired(String token) {
         final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+        return expiration.before(clock.now());
     }
 
     private Boolean ignoreTokenExpiration(String token) {
@@ -68,8 +123,9 @@ public class JwtTokenUtil implements Serializable {
 
     private String doGenerateToken(Map<String, Object> claims, String subject) {
 
-        return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY * 1000)).signWith(key).compact();
+        Date now = clock.now();
+        return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + JWT_TOKEN_VALIDITY * 1000)).signWith(key).compact();
     }
 
     public Boolean canTokenBeRefreshed(String token) {
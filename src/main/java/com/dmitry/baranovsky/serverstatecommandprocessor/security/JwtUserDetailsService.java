@@ -1,28 +1,204 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor.security;
 
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class that obtains user data from the repository.
+ * <p>
+ * Loaded users are cached for the configured time to live. An expired user is served at once
+ * and reloaded in the background, one reload per user at a time. If the reload fails,
+ * the user is not reloaded again before the retry interval has passed, so a slow or failing
+ * repository never delays requests of cached users. Users are kept for at most the configured maximum staleness.
+ * <p>
+ * Only the name and the password hash are cached, every call returns new user details, because
+ * the authentication manager erases the credentials of the details it has authenticated.
  */
 @Service
 public class JwtUserDetailsService implements UserDetailsService {
+    private static final Log logger = LogFactory.getLog(JwtUserDetailsService.class);
     @Autowired
     private UserRepository userDatabase;
+    private final Cache<String, CachedUser> users;
+    private final Set<String> refreshes = ConcurrentHashMap.newKeySet();
+    private final Executor refreshExecutor;
+    private final ExecutorService refreshPool;
+    private final Ticker ticker;
+    private final long timeToLiveNanos;
+    private final long retryNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
 
+    /**
+     * The user details service constructor.
+     *
+     * @param size              the maximum amount of cached users.
+     * @param timeToLiveSeconds the time after which a cached user is reloaded.
+     * @param maxStaleSeconds   the time after which a cached user is no longer served.
+     * @param retrySeconds      the time after a failed reload before the user is reloaded again.
+     */
+    @Autowired
+    public JwtUserDetailsService(@Value("${user-cache.size:1000}") long size,
+                                 @Value("${user-cache.ttl-seconds:60}") long timeToLiveSeconds,
+                                 @Value("${user-cache.max-stale-seconds:3600}") long maxStaleSeconds,
+                                 @Value("${user-cache.retry-seconds:10}") long retrySeconds) {
+        this(null, size, timeToLiveSeconds, maxStaleSeconds, retrySeconds, Ticker.systemTicker(), null);
+    }
+
+    /**
+     * @param userDatabase    the repository, null to have it injected.
+     * @param ticker          the time source of the cache.
+     * @param refreshExecutor runs the reloads, null to use a pool of its own.
+     */
+    JwtUserDetailsService(UserRepository userDatabase, long size, long timeToLiveSeconds, long maxStaleSeconds,
+                          long retrySeconds, Ticker ticker, Executor refreshExecutor) {
+        this.userDatabase = userDatabase;
+        this.ticker = ticker;
+        users = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(Math.max(timeToLiveSeconds, maxStaleSeconds), TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+        timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+        retryNanos = TimeUnit.SECONDS.toNanos(retrySeconds);
+        if (refreshExecutor == null) {
+            refreshPool = Executors.newFixedThreadPool(2,
+                    new ThreadFactoryBuilder().setNameFormat("user-refresh-%d").setDaemon(true).build());
+            this.refreshExecutor = refreshPool;
+        } else {
+            refreshPool = null;
+            this.refreshExecutor = refreshExecutor;
+        }
+    }
+
+    /**
+     * Returns the cached user, only a user that isn't cached is read from the repository on the calling thread.
+     *
+     * @return new user details, they may be modified by the caller.
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        CachedUser cached = users.getIfPresent(username);
+        if (cached == null) {
+            return load(username);
+        }
+        long now = ticker.read();
+        if (now - cached.loadTime < timeToLiveNanos) {
+            hits.increment();
+            return cached.toUserDetails();
+        }
+        staleServed.increment();
+        if (now - cached.retryAfter >= 0 && refreshes.add(username)) {
+            try {
+                refreshExecutor.execute(() -> refresh(username, cached));
+            } catch (RejectedExecutionException e) {
+                refreshes.remove(username);
+            }
+        }
+        return cached.toUserDetails();
+    }
+
+    private void refresh(String username, CachedUser cached) {
+        try {
+            load(username);
+        } catch (UsernameNotFoundException e) {
+            logger.info("User " + username + " no longer exists");
+        } catch (RuntimeException e) {
+            cached.retryAfter = ticker.read() + retryNanos;
+            logger.warn("Unable to reload user " + username + ", serving cached user details", e);
+        } finally {
+            refreshes.remove(username);
+        }
+    }
+
+    private UserDetails load(String username) {
+        loads.increment();
         UserData user = userDatabase.findByUserName(username);
         if (user == null) {
+            users.invalidate(username);
             throw new UsernameNotFoundException("User not found with username: " + username);
         }
-        return new User(user.getUserName(), user.getPasswordHash(), new ArrayList<>());
+        CachedUser cached = new CachedUser(user.getUserName(), user.getPasswordHash(), ticker.read());
+        users.put(username, cached);
+        return cached.toUserDetails();
+    }
+
+    /**
+     * Removes the given user from the cache, the next request reads it from the repository.
+     *
+     * @param username the name of the user.
+     */
+    public void invalidate(String username) {
+        users.invalidate(username);
+    }
+
+    public void invalidateAll() {
+        users.invalidateAll();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return the amount of times an expired user was served while it was reloaded or couldn't be reloaded.
+     */
+    public long staleServedCount() {
+        return staleServed.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshPool != null) {
+            refreshPool.shutdownNow();
+        }
+    }
+
+    private static final class CachedUser {
+        private final String userName;
+        private final String passwordHash;
+        private final long loadTime;
+        /**
+         * The time before which a failed reload is not retried.
+         */
+        private volatile long retryAfter;
+
+        CachedUser(String userName, String passwordHash, long loadTime) {
+            this.userName = userName;
+            this.passwordHash = passwordHash;
+            this.loadTime = loadTime;
+            retryAfter = loadTime;
+        }
+
+        UserDetails toUserDetails() {
+            return new User(userName, passwordHash, new ArrayList<>());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the counters of the {@link JwtUserDetailsService} cache to Micrometer.
+ * <p>
+ * They are available under /actuator/metrics as user.cache.hits, user.cache.loads and user.cache.stale.
+ */
+@Component
+public class UserCacheMetricsBinder implements MeterBinder {
+    private final JwtUserDetailsService userDetailsService;
+
+    @Autowired
+    public UserCacheMetricsBinder(JwtUserDetailsService userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.cache.hits", userDetailsService, JwtUserDetailsService::hitCount)
+                .description("Users served from the cache within their time to live")
+                .register(registry);
+        FunctionCounter.builder("user.cache.loads", userDetailsService, JwtUserDetailsService::loadCount)
+                .description("Users read from the repository")
+                .register(registry);
+        FunctionCounter.builder("user.cache.stale", userDetailsService, JwtUserDetailsService::staleServedCount)
+                .description("Expired users served while they were reloaded or couldn't be reloaded")
+                .register(registry);
+    }
+}
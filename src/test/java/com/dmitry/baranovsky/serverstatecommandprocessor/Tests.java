@@ -1,12 +1,62 @@
 package com.dmitry.baranovsky.serverstatecommandprocessor;
 
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.CompiledSchedule;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.DayTimeNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.PatchCalendar;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleCache;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleParseException;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.ScheduleParser;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.UtcOffsetNode;
+import com.dmitry.baranovsky.serverstatecommandprocessor.schedule.WeekBitmap;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Maps;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.test.util.AssertionErrors.assertTrue;
 
 class Tests {
@@ -39,4 +89,1074 @@ class Tests {
         Map<String, String> result = processor.run(json);
         assertTrue("Maps are equal", Maps.difference(expected, result).areEqual());
     }
-}
\ No newline at end of file
+
+    @Test
+    void registryTest() {
+        CommandRegistry registry = CommandRegistry.getDefault();
+        assertSame(registry, CommandRegistry.getDefault());
+        assertNotNull(registry.getCommand("WD"));
+        assertNotNull(registry.getConfigCommand("UTC"));
+        assertNull(registry.getCommand("UTC"));
+    }
+
+    @Test
+    void concurrentProcessingTest() throws Exception {
+        String[] workHours = {"[Sun 20:00-23:59][WD 00:00-23:55][Sat 00:00-00:55][OSH 4][UTC-3]",
+                "[Mon-Fri 09:00-17:00][UOD 12:00]", "[Mon, Wed, Fri 08:00-18:00]", "[24h]", "[OFF]", "[Manual]",
+                "[WE 10:00-12:00][Foo]", "[Mon-Fri 25:00-26:00]"};
+        String[] currentTimes = {"05/11/2020 03:00:00", "05/11/2020 09:00:00", "05/13/2020 12:00:00",
+                "05/16/2020 10:30:00", "05/15/2020 17:00:00"};
+        List<Map<String, String>> inputs = new ArrayList<>();
+        for (String workHour : workHours) {
+            for (String currentTime : currentTimes) {
+                for (String state : new String[]{"running", "stopped"}) {
+                    Map<String, String> json = new HashMap<>();
+                    json.put("Current Time", currentTime);
+                    json.put("Work Hours", workHour);
+                    json.put("Patch Time", "[2 Wed 12:00]");
+                    json.put("Time Zone", "Europe/Berlin");
+                    json.put("Server State", state);
+                    json.put("Launch Time", "05/11/2020 01:00:00");
+                    inputs.add(json);
+                }
+            }
+        }
+        List<Map<String, String>> expected = new ArrayList<>();
+        for (Map<String, String> input : inputs) {
+            expected.add(new ServerStateCommandProcessor().run(input));
+        }
+
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200 * inputs.size(); i++) {
+                        int index = (i + offset) % inputs.size();
+                        assertEquals(expected.get(index), processor.run(inputs.get(index)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void scheduleCacheTest() {
+        ScheduleCache cache = new ScheduleCache(CommandRegistry.getDefault(), 2);
+        CompiledSchedule schedule = cache.get("[WD 08:00-18:00][UTC-2]");
+        assertFalse(schedule.isFailed());
+        assertEquals(1, schedule.getBrackets().size());
+        assertEquals(-2, schedule.getUTCshift());
+        assertSame(schedule, cache.get("[WD 08:00-18:00][UTC-2]"));
+        assertEquals(-2, cache.get("[WD 08:00-18:00][UTC+2]").getUTCshift());
+
+        CompiledSchedule failed = cache.get("[WD 08:00-18:00][Foo]");
+        assertEquals("Illegal command: Foo", failed.getError());
+        assertSame(failed, cache.get("[WD 08:00-18:00][Foo]"));
+        assertEquals(2, cache.hitCount());
+        assertEquals(3, cache.missCount());
+
+        cache.get("[24h]");
+        assertEquals(2, cache.evictionCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void parserTest() throws ScheduleParseException {
+        List<ScheduleNode> nodes = ScheduleParser.parse("[Mon,Wed,Fri 09:00-17:30][UTC+2]");
+        assertEquals(2, nodes.size());
+        DayTimeNode dayTime = (DayTimeNode) nodes.get(0);
+        assertEquals("Mon", dayTime.getKeyword());
+        assertTrue("Monday is matching", dayTime.isMatchingDay(DayOfWeek.MONDAY));
+        assertFalse(dayTime.isMatchingDay(DayOfWeek.THURSDAY));
+        assertEquals(9, dayTime.getStartHour());
+        assertEquals(30, dayTime.getEndMinute());
+        // the sign of [UTC+n] is ignored, it shifts by -n like [UTC-n]
+        assertEquals(-2, ((UtcOffsetNode) nodes.get(1)).getShift());
+
+        ScheduleParseException exception = assertThrows(ScheduleParseException.class,
+                () -> ScheduleParser.parse("[WD 24h][Mon 9:00-25:00]"));
+        assertEquals("Wrong time format:9:00-25:00", exception.getMessage());
+        assertEquals(1, exception.getIndex());
+        assertEquals(13, exception.getOffset());
+    }
+
+    @Test
+    void bitmapTest() {
+        CompiledSchedule schedule = CompiledSchedule.compile(CommandRegistry.getDefault(),
+                "[Mon-Fri 09:00-17:00][WE 24h][OSH 4]");
+        WeekBitmap bitmap = schedule.getBitmap();
+        assertEquals(5 * 8 * 60 + 2 * 24 * 60, bitmap.workMinutes());
+        int mondayNine = WeekBitmap.minuteOfWeek(ZonedDateTime.of(2020, 5, 11, 9, 0, 0, 0, ZoneOffset.UTC));
+        assertTrue("Monday 09:00 is start time", bitmap.isStart(mondayNine));
+        assertTrue("Monday 09:00 is work time", bitmap.isWorkTime(mondayNine));
+        assertFalse(bitmap.isWorkTime(mondayNine - 1));
+        assertFalse(bitmap.isWorkTime(mondayNine + 8 * 60));
+        assertTrue("Sunday 23:59 is work time", bitmap.isWorkTime(WeekBitmap.MINUTES_PER_WEEK - 1));
+    }
+
+    @Test
+    void batchTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 4);
+        List<Map<String, String>> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, String> json = new HashMap<>();
+            json.put("Current Time", "05/11/2020 0" + i % 10 + ":00:00");
+            json.put("Work Hours", i % 2 == 0 ? "[Mon-Fri 09:00-17:00][UOD 03:00]" : "[WD 24h][UTC-3]");
+            json.put("Patch Time", "");
+            json.put("Time Zone", "UTC");
+            json.put("Server State", "stopped");
+            json.put("Launch Time", "05/11/2020 01:00:00");
+            inputs.add(json);
+        }
+        inputs.add(new HashMap<>());
+        inputs.add(null);
+        try {
+            List<Map<String, String>> results = batchProcessor.run(inputs);
+            assertEquals(inputs.size(), results.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(processor.run(inputs.get(i)), results.get(i));
+            }
+            assertEquals("Null argument", results.get(100).get("ErrorMessage"));
+            assertEquals("Null argument", results.get(101).get("ErrorMessage"));
+            assertEquals(2, processor.getScheduleCache().missCount());
+
+            // a failing item gets a fixed error message instead of the exception
+            List<Map<String, String>> failed = BatchProcessor.await(batchProcessor.runAsync(inputs.subList(0, 2),
+                    input -> input.get("Work Hours"), (input, schedules) -> {
+                        throw new IllegalStateException("internal details");
+                    }, processor::errorResult));
+            assertEquals("Could not process input", failed.get(0).get("ErrorMessage"));
+            assertEquals("True", failed.get(1).get("ErrorFlag"));
+        } finally {
+            batchProcessor.shutdown();
+        }
+
+        // the schedules are compiled on the pool, not on the calling thread
+        ServerStateCommandProcessor compiling = new ServerStateCommandProcessor();
+        BatchProcessor single = new BatchProcessor(compiling, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            single.supplyAsync(() -> {
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            CompletableFuture<List<Map<String, String>>> pending = single.runAsync(inputs.subList(0, 2));
+            assertEquals(0, compiling.getScheduleCache().missCount());
+            release.countDown();
+            assertEquals(Arrays.asList(compiling.run(inputs.get(0)), compiling.run(inputs.get(1))),
+                    BatchProcessor.await(pending));
+            assertEquals(2, compiling.getScheduleCache().missCount());
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void streamTest() throws Exception {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 2);
+        ObjectMapper mapper = new ObjectMapper();
+        StreamProcessor streamProcessor = new StreamProcessor(processor, batchProcessor, mapper, 3, 512);
+        Map<String, String> json = new HashMap<>();
+        json.put("Current Time", "05/11/2020 09:00:00");
+        json.put("Work Hours", "[Mon-Fri 09:00-17:00]");
+        json.put("Patch Time", "");
+        json.put("Time Zone", "UTC");
+        json.put("Server State", "stopped");
+        json.put("Launch Time", "05/11/2020 01:00:00");
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            input.append(mapper.writeValueAsString(json)).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        String tooLong = "{\"Work Hours\":\"" + "[Mon-Fri 09:00-17:00]".repeat(100) + "\"}";
+        input.append(tooLong).append('\n');
+        input.append(mapper.writeValueAsString(json)).append('\n');
+        input.append("\n{\"Work Hours\":\n");
+        // a body without a final line feed is not buffered beyond the maximum either
+        input.append(tooLong);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CountDownLatch answered = new CountDownLatch(1);
+        try {
+            streamProcessor.run(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+
+            // a client that waits for the answer to its first line gets it before the window is full
+            byte[] first = (mapper.writeValueAsString(json) + "\n").getBytes(StandardCharsets.UTF_8);
+            InputStream waiting = new InputStream() {
+                private int position;
+
+                @Override
+                public int read() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    if (position < first.length) {
+                        int count = Math.min(length, first.length - position);
+                        System.arraycopy(first, position, bytes, offset, count);
+                        position += count;
+                        return count;
+                    }
+                    try {
+                        if (!answered.await(10, TimeUnit.SECONDS)) {
+                            throw new IOException("No answer to the first line");
+                        }
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return -1;
+                }
+
+                @Override
+                public int available() {
+                    return first.length - position;
+                }
+            };
+            ByteArrayOutputStream answers = new ByteArrayOutputStream() {
+                @Override
+                public void flush() {
+                    answered.countDown();
+                }
+            };
+            streamProcessor.run(waiting, answers);
+            assertEquals(processor.run(json), mapper.readValue(answers.toString(StandardCharsets.UTF_8).trim(),
+                    new TypeReference<Map<String, String>>() {
+                    }));
+        } finally {
+            batchProcessor.shutdown();
+        }
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(11, lines.length);
+        for (int i : new int[]{0, 1, 2, 3, 4, 5, 6, 8}) {
+            assertEquals(processor.run(json), mapper.readValue(lines[i], new TypeReference<Map<String, String>>() {
+            }));
+        }
+        assertTrue("Long line reported", lines[7].contains("Malformed input: line is longer than 512 bytes"));
+        assertTrue("Malformed line reported", lines[9].contains("Malformed input"));
+        assertTrue("Long last line reported", lines[10].contains("Malformed input: line is longer than 512 bytes"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void forecastTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        ForecastProcessor forecastProcessor = new ForecastProcessor(processor);
+        String[] workHours = {"[Mon-Fri 09:00-17:00][UTC+2]", "[WD 22:00-06:00][OSH 2]", "[All 24h][OSH 3][UOD 04:30]",
+                "[Sat 10:00-10:30][Sun 08:00-20:00][UOD 12:00]", "[Manual][All 09:00-17:00]", "[OFF][24h]",
+                "[Mon,Sat,Sun 07:15-07:45][Tue-Fri 20:00-23:00][UTC-4]"};
+        String[] timeZones = {"UTC", "Europe/Berlin", "America/New_York"};
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss");
+        for (String workHour : workHours) {
+            for (String timeZone : timeZones) {
+                Map<String, String> json = new HashMap<>();
+                json.put("Current Time", "03/27/2020 23:58:30");
+                json.put("Work Hours", workHour);
+                json.put("Patch Time", "[5 Sun 03:10]");
+                json.put("Time Zone", timeZone);
+                json.put("Server State", "stopped");
+                json.put("Launch Time", "03/20/2020 08:00:00");
+                json.put("Horizon Days", "4");
+                json.put("Transitions", "100");
+                Map<String, Object> forecast = forecastProcessor.run(json);
+                assertEquals("False", forecast.get("ErrorFlag"));
+                List<Map<String, String>> transitions = (List<Map<String, String>>) forecast.get("Transitions");
+
+                // poll the processor every minute and compare
+                Map<String, String> poll = new HashMap<>(json);
+                LocalDateTime time = LocalDateTime.parse(json.get("Current Time"), formatter);
+                LocalDateTime until = time.plusDays(4);
+                int found = 0;
+                while (time.isBefore(until)) {
+                    poll.put("Current Time", time.format(formatter));
+                    String action = processor.run(poll).get("Action");
+                    boolean running = poll.get("Server State").equals("running");
+                    if (action.equals(running ? "Stop" : "Start")) {
+                        Map<String, String> transition = transitions.get(found++);
+                        LocalDateTime expected = LocalDateTime.parse(transition.get("Time"), formatter);
+                        assertTrue(workHour + " " + timeZone + " " + time, !expected.isAfter(time)
+                                && expected.isAfter(time.minusMinutes(1)));
+                        assertEquals(action, transition.get("Action"));
+                        poll.put("Server State", running ? "stopped" : "running");
+                        if (!running) {
+                            poll.put("Launch Time", transition.get("Time"));
+                        }
+                        time = expected;
+                    }
+                    time = time.plusMinutes(1);
+                }
+                assertEquals(found, transitions.size(), workHour + " " + timeZone);
+            }
+        }
+    }
+
+    @Test
+    void binaryProtocolTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 2);
+        BinaryProcessor binaryProcessor = new BinaryProcessor(processor, batchProcessor);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss");
+        String[] actions = {"", "Start", "Stop", "Skip Start", "Skip Stop"};
+        String[] workTimes = {"[Mon-Fri 09:00-17:00][UOD 20:00]", "[WD 24h][UTC-3]", "[OSH 2]", "[OFF]",
+                "[24h]", "[Mon 25:00-26:00]", ""};
+        String[] patchTimes = {"", "[2 Sun 02:00]", "[9 Mon 01:00]"};
+        List<BinaryProtocol.Request> requests = new ArrayList<>();
+        List<Map<String, String>> expected = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2020, 3, 7, 22, 0);
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime current = start.plusMinutes(17L * i);
+            LocalDateTime launch = current.minusHours(i % 5);
+            Map<String, String> json = new HashMap<>();
+            json.put("Current Time", current.format(formatter));
+            json.put("Launch Time", launch.format(formatter));
+            json.put("Work Hours", workTimes[i % workTimes.length]);
+            json.put("Patch Time", patchTimes[i % patchTimes.length]);
+            json.put("Time Zone", i % 4 == 0 ? "Bad/Zone" : "America/New_York");
+            json.put("Server State", i % 3 == 0 ? "running" : "stopped");
+            expected.add(processor.run(json));
+            requests.add(new BinaryProtocol.Request(i % 3 == 0 ? BinaryProtocol.RUNNING : BinaryProtocol.STOPPED,
+                    current.toEpochSecond(ZoneOffset.UTC), launch.toEpochSecond(ZoneOffset.UTC),
+                    json.get("Work Hours"), json.get("Time Zone"), json.get("Patch Time")));
+        }
+        try {
+            List<BinaryProtocol.Response> batch =
+                    BinaryProtocol.readResponses(binaryProcessor.runBatch(BinaryProtocol.writeRequests(requests)));
+            assertEquals(requests.size(), batch.size());
+            for (int i = 0; i < requests.size(); i++) {
+                BinaryProtocol.Response single = BinaryProtocol.readResponse(
+                        binaryProcessor.run(BinaryProtocol.writeRequest(requests.get(i))));
+                for (BinaryProtocol.Response response : new BinaryProtocol.Response[]{single, batch.get(i)}) {
+                    Map<String, String> json = expected.get(i);
+                    assertEquals(json.get("ErrorFlag"), response.isError() ? "True" : "False");
+                    assertEquals(json.get("Action"), actions[response.getAction()]);
+                    assertEquals(json.get("Reason"), response.getReason());
+                    assertEquals(json.get("ErrorMessage"), response.getErrorMessage());
+                    assertEquals(json.get("LocalTime"), response.isLocalTimePresent()
+                            ? LocalDateTime.ofEpochSecond(response.getLocalTime(), 0, ZoneOffset.UTC).format(formatter)
+                            : "error");
+                }
+            }
+            BinaryProtocol.Response badState = BinaryProtocol.readResponse(binaryProcessor.run(
+                    BinaryProtocol.writeRequest(new BinaryProtocol.Request(7, 0, 0, "[OFF]", "UTC", ""))));
+            assertEquals("Incorrect server state", badState.getErrorMessage());
+            byte[] message = BinaryProtocol.writeRequest(requests.get(1));
+            assertThrows(BinaryProtocol.MalformedMessageException.class,
+                    () -> binaryProcessor.run(Arrays.copyOf(message, message.length - 1)));
+            assertThrows(BinaryProtocol.MalformedMessageException.class,
+                    () -> binaryProcessor.run(Arrays.copyOf(message, message.length + 1)));
+            assertThrows(BinaryProtocol.MalformedMessageException.class,
+                    () -> binaryProcessor.runBatch(new byte[]{(byte) 0xFF, 0x7F}));
+        } finally {
+            batchProcessor.shutdown();
+        }
+    }
+
+    @Test
+    void metricsTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        ProcessorMetrics metrics = processor.getMetrics();
+        Map<String, String> json = new HashMap<>();
+        json.put("Current Time", "05/11/2020 10:00:00");
+        json.put("Launch Time", "05/11/2020 01:00:00");
+        json.put("Time Zone", "UTC");
+        json.put("Server State", "stopped");
+        json.put("Patch Time", "");
+        json.put("Work Hours", "[Mon-Fri 09:00-17:00][UOD 03:00]");
+        processor.run(json);
+        processor.run(json);
+        json.put("Work Hours", "[Mon-Fri 09:00-17:00][XYZ]");
+        processor.run(json);
+        json.put("Time Zone", "Nowhere");
+        processor.run(json);
+        processor.run(null);
+
+        assertEquals(4, metrics.getPhase(ProcessorMetrics.Phase.READ_INPUT).count());
+        assertEquals(3, metrics.getPhase(ProcessorMetrics.Phase.SCHEDULE).count());
+        assertEquals(2, metrics.getPhase(ProcessorMetrics.Phase.COMMANDS).count());
+        assertEquals(2, metrics.getPhase(ProcessorMetrics.Phase.CALCULATE_RESULT).count());
+        assertEquals(5, metrics.getPhase(ProcessorMetrics.Phase.RESPONSE).count());
+        // the start of the period outranks any result of [UOD], so it is not executed
+        assertEquals(0, metrics.getCommands().get("UOD").count());
+        assertEquals(2, metrics.getCommands().get("Mon").count());
+        assertEquals(0, metrics.getCommands().get("OSH").count());
+        assertEquals(2, metrics.actionCount(ServerStateCommandProcessor.Action.ON));
+        assertEquals(2, metrics.errorCount(ProcessorMetrics.ErrorKind.INPUT));
+        assertEquals(1, metrics.errorCount(ProcessorMetrics.ErrorKind.SCHEDULE));
+        assertEquals(0, metrics.errorCount(ProcessorMetrics.ErrorKind.COMMAND));
+    }
+
+    @Test
+    void timestampParserTest() {
+        Pattern timeRegex = Pattern.compile("^(\\d+)/(\\d+)/(\\d+)" +
+                " ([0-9]|0[0-9]|1[0-9]|2[0-3]):([0-5][0-9]):([0-5][0-9])$");
+        List<String> values = new ArrayList<>(Arrays.asList("", " ", "1/1/2020 1:00:00", "01/01/2020 00:00:00",
+                "13/01/2020 00:00:00", "00/10/2020 00:00:00", "02/29/2020 10:00:00", "02/29/2021 10:00:00",
+                "02/29/1900 10:00:00", "02/29/2000 10:00:00", "02/30/2020 10:00:00", "04/31/2020 10:00:00",
+                "12/31/999999999 23:59:59", "01/01/1000000000 00:00:00", "01/01/0 00:00:00", "01/01/0000 00:00:00",
+                "1/1/2020 24:00:00", "1/1/2020 023:00:00", "1/1/2020 9:60:00", "1/1/2020 9:00:60", "1/1/2020 9:0:00",
+                "1/1/2020  9:00:00", "1/1/2020 9:00:00 ", "1/1/2020 9:00:00\n", "1/1/2020T9:00:00", "1//2020 9:00:00",
+                "1/1/ 9:00:00", "/1/2020 9:00:00", "1/1/2020/1 9:00:00", "+1/1/2020 9:00:00", "1/1/2020 +9:00:00",
+                "0000000001/00000001/2020 09:00:00", "1/1/2020 9:00", "1/1/2020 9-00-00", "bad"));
+        Random random = new Random(16);
+        String alphabet = "0123456789/: x";
+        for (int i = 0; i < 20000; i++) {
+            LocalDateTime dateTime = LocalDateTime.of(1600, 1, 1, 0, 0).plusMinutes(random.nextInt(300_000_000))
+                    .withSecond(random.nextInt(60));
+            String value = String.format(random.nextBoolean() ? "%d/%d/%d %d:%02d:%02d" : "%02d/%02d/%04d %02d:%02d:%02d",
+                    dateTime.getMonthValue(), dateTime.getDayOfMonth(), dateTime.getYear(),
+                    dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond());
+            values.add(value);
+            char[] mutated = value.toCharArray();
+            mutated[random.nextInt(mutated.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            values.add(new String(mutated));
+        }
+        for (String value : values) {
+            Long expected = null;
+            Matcher matcher = timeRegex.matcher(value);
+            if (matcher.matches()) {
+                try {
+                    expected = ZonedDateTime.of(Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(1)),
+                            Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(4)),
+                            Integer.parseInt(matcher.group(5)), Integer.parseInt(matcher.group(6)), 0, ZoneOffset.UTC)
+                            .toEpochSecond();
+                } catch (DateTimeException e) {
+                    expected = null;
+                }
+            }
+            long parsed = TimestampParser.parse(value);
+            assertEquals(expected, parsed == TimestampParser.INVALID ? null : parsed, value);
+        }
+        assertEquals(TimestampParser.INVALID, TimestampParser.parse("99999999999/1/2020 9:00:00"));
+    }
+
+    @Test
+    void zoneCacheTest() {
+        ZoneCache cache = new ZoneCache(ZoneCache.DEFAULT_SIZE);
+        Random random = new Random(17);
+        for (String id : ZoneId.getAvailableZoneIds()) {
+            ZoneCache.Zone zone = cache.get(id);
+            ZoneRules rules = ZoneId.of(id).getRules();
+            List<Long> instants = new ArrayList<>(Arrays.asList(ZoneCache.TABLE_START - 1, ZoneCache.TABLE_START,
+                    ZoneCache.TABLE_END - 1, ZoneCache.TABLE_END, 1583650800L, 1604210400L));
+            for (int i = 0; i < 200; i++) {
+                instants.add(ZoneCache.TABLE_START - 86_400L * 365 * 10
+                        + (long) (random.nextDouble() * 86_400L * 365 * 220));
+            }
+            ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(ZoneCache.TABLE_START));
+            while (transition != null && transition.toEpochSecond() < ZoneCache.TABLE_END) {
+                instants.add(transition.toEpochSecond() - 1);
+                instants.add(transition.toEpochSecond());
+                transition = rules.nextTransition(transition.getInstant());
+            }
+            for (long instant : instants) {
+                int info = zone.offsetInfo(instant);
+                Instant expected = Instant.ofEpochSecond(instant);
+                assertEquals(rules.getOffset(expected).getTotalSeconds(), ZoneCache.offsetSeconds(info), id + " " + instant);
+                assertEquals(rules.isDaylightSavings(expected), ZoneCache.isDaylightSavings(info), id + " " + instant);
+            }
+        }
+        assertSame(cache.get("Europe/Kiev"), cache.get("Europe/Kiev"));
+        assertThrows(DateTimeException.class, () -> cache.get("Mars/Olympus"));
+
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        Map<String, String> input = new HashMap<>();
+        input.put("Work Hours", "[Mon-Sun 02:00-03:00]");
+        input.put("Time Zone", "America/New_York");
+        input.put("Server State", "stopped");
+        input.put("Launch Time", "03/01/2020 00:00:00");
+        input.put("Current Time", "03/08/2020 06:59:59");
+        assertEquals("03/08/2020 01:59:59", processor.run(input).get("LocalTime"));
+        input.put("Current Time", "03/08/2020 07:00:00");
+        assertEquals("03/08/2020 03:00:00", processor.run(input).get("LocalTime"));
+    }
+
+    @Test
+    void commandContextTest() {
+        Random random = new Random(18);
+        for (int i = 0; i < 20_000; i++) {
+            long epochSecond = i < 10_000 ? (long) (random.nextDouble() * 8_000_000_000L) - 4_000_000_000L
+                    : (long) (random.nextDouble() * 600_000_000_000L) - 300_000_000_000L;
+            EvaluationContext context = new EvaluationContext();
+            context.currentDateTime = Instant.ofEpochSecond(epochSecond).atZone(ServerStateCommandProcessor.UTC);
+            context.launchDateTime = context.currentDateTime.minusSeconds(random.nextInt(100_000));
+            context.isRunning = random.nextBoolean();
+            CommandContext commandContext = new CommandContext(context);
+            ZonedDateTime time = context.currentDateTime;
+            assertEquals(Math.floorDiv(epochSecond, 60), commandContext.getEpochMinute());
+            assertEquals(WeekBitmap.minuteOfWeek(time), commandContext.getMinuteOfWeek(), time.toString());
+            assertEquals(time.getHour() * 60 + time.getMinute(), commandContext.getMinuteOfDay());
+            assertEquals(time.getDayOfWeek().ordinal(), commandContext.getDayOfWeek());
+            assertEquals(time.getDayOfMonth(), commandContext.getDayOfMonth(), time.toString());
+            assertEquals(context.isRunning, commandContext.isRunning());
+            assertEquals(Duration.between(context.launchDateTime, time).getSeconds(),
+                    commandContext.getSecondsSinceLaunch());
+        }
+
+        CommandRegistry.Builder builder = new CommandRegistry.Builder();
+        builder.register("Legacy", new Command() {
+            @Override
+            public Result execute(EvaluationContext context, ScheduleNode node) {
+                return new Result(context.isRunning() ? ServerStateCommandProcessor.Action.WORK_TIME
+                        : ServerStateCommandProcessor.Action.ON, "Legacy " + context.getCurrentDateTime().getHour());
+            }
+        });
+        builder.register("24h", CommandRegistry.getDefault().getCommand("24h"));
+        builder.registerConfig("UTC", CommandRegistry.getDefault().getConfigCommand("UTC"));
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor(builder.build(), 10);
+        Map<String, String> input = new HashMap<>();
+        input.put("Work Hours", "[Legacy][UTC+2]");
+        input.put("Time Zone", "UTC");
+        input.put("Server State", "stopped");
+        input.put("Launch Time", "05/11/2020 01:00:00");
+        input.put("Current Time", "05/11/2020 09:30:00");
+        assertEquals("Start", processor.run(input).get("Action"));
+        assertEquals("Legacy 7", processor.run(input).get("Reason"));
+        input.put("Work Hours", "[24h][Foo]");
+        assertEquals("Illegal command: Foo", processor.run(input).get("ErrorMessage"));
+    }
+
+    @Test
+    void jsonResponseTest() throws Exception {
+        String[] workHours = {"[Mon-Sun 00:00-09:00][UOD 09:00][OSH 1]", "[Sun 20:00-23:59][WD 00:00-23:55][UTC-3]",
+                "[Mon-Fri 09:00-17:00][UOD 12:00]", "[24h]", "[OFF]", "[Manual]", "[WE 10:00-12:00][Foo\"\\]",
+                "[Mon-Fri 25:00-26:00]", "[\u00e9t\u00e9 \ud83d\ude00\t\u0001\n\u007f]"};
+        String[] currentTimes = {"05/11/2020 08:00:00", "05/13/2020 12:00:00", "05/16/2020 10:30:00",
+                "12/31/9999 23:30:00", "1/1/0 0:00:00", "05/11/2020 9:00", "05/11/2020\r\b\f"};
+        List<Map<String, String>> inputs = new ArrayList<>();
+        for (String workHour : workHours) {
+            for (String currentTime : currentTimes) {
+                for (String state : new String[]{"running", "stopped"}) {
+                    Map<String, String> json = new HashMap<>();
+                    json.put("Current Time", currentTime);
+                    json.put("Work Hours", workHour);
+                    json.put("Patch Time", "[2 Wed 12:00]");
+                    json.put("Time Zone", currentTime.startsWith("12") ? "Asia/Tokyo" : "Europe/Berlin");
+                    json.put("Server State", state);
+                    json.put("Launch Time", "05/11/2020 07:00:00");
+                    inputs.add(json);
+                }
+            }
+        }
+        inputs.add(null);
+        ObjectMapper mapper = new ObjectMapper();
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        for (Map<String, String> input : inputs) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            processor.run(input, output);
+            assertEquals(mapper.writeValueAsString(processor.run(input)), output.toString(StandardCharsets.UTF_8));
+        }
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 4);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            batchProcessor.run(inputs, output);
+            assertEquals(mapper.writeValueAsString(batchProcessor.run(inputs)), output.toString(StandardCharsets.UTF_8));
+        } finally {
+            batchProcessor.shutdown();
+        }
+        assertEquals("Stop", processor.run(inputs.get(0)).get("Action"));
+        assertEquals("up on demand shutdown time;\nOut of scheduled hours", processor.run(inputs.get(0)).get("Reason"));
+    }
+
+    @Test
+    void fleetRegistryTest() throws Exception {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        long now = TimestampParser.parse("05/11/2020 10:00:00");
+        FleetRegistry registry = new FleetRegistry(processor, 3, () -> now);
+        Map<String, String> server = new HashMap<>();
+        server.put("Work Hours", "[Mon-Fri 09:00-17:00][UOD 12:00]");
+        server.put("Time Zone", "Europe/Berlin");
+        server.put("Launch Time", "05/11/2020 07:00:00");
+        server.put("Server State", "stopped");
+        server.put("Patch Time", "[2 Wed 12:00]");
+        assertEquals("False", registry.put("a", server).get("ErrorFlag"));
+        assertEquals("False", registry.put("b", new HashMap<>(server)).get("ErrorFlag"));
+        assertSame(registry.getServer("a").getSchedule(), registry.getServer("b").getSchedule());
+        assertSame(registry.getServer("a").getTimeZone(), registry.getServer("b").getTimeZone());
+        assertEquals(1, registry.scheduleCount());
+        assertEquals(server, registry.get("a"));
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (String state : new String[]{"stopped", "running", ""}) {
+            for (String currentTime : new String[]{"05/11/2020 07:00:00", "05/11/2020 10:00:00", ""}) {
+                Map<String, String> poll = new HashMap<>();
+                poll.put("Server State", state);
+                poll.put("Current Time", currentTime);
+                Map<String, String> input = new HashMap<>(server);
+                input.put("Server State", state.isEmpty() ? registry.get("a").get("Server State") : state);
+                input.put("Current Time", currentTime.isEmpty() ? "05/11/2020 10:00:00" : currentTime);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                registry.process("a", poll, output);
+                assertEquals(mapper.writeValueAsString(processor.run(input)), output.toString(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals("running", registry.get("a").get("Server State"));
+        assertEquals("Incorrect server state", registry.evaluate("a", Collections.singletonMap("Server State", "on")).error);
+
+        Map<String, String> invalid = new HashMap<>(server);
+        invalid.put("Work Hours", "[Mon-Fri 09:00-17:00][Foo]");
+        assertEquals("Illegal command: Foo", registry.put("c", invalid).get("ErrorMessage"));
+        invalid.put("Work Hours", server.get("Work Hours"));
+        invalid.put("Time Zone", "Mars/Olympus");
+        assertEquals("Incorrect time zone:Mars/Olympus", registry.put("c", invalid).get("ErrorMessage"));
+        assertEquals("False", registry.put("c", server).get("ErrorFlag"));
+        assertEquals("True", registry.put("d", server).get("ErrorFlag"));
+        assertEquals("False", registry.put("c", server).get("ErrorFlag"));
+        assertEquals(3, registry.size());
+
+        registry.remove("b");
+        assertEquals(2, registry.size());
+        assertThrows(FleetRegistry.UnknownServerException.class, () -> registry.get("b"));
+        assertThrows(FleetRegistry.UnknownServerException.class, () -> registry.remove("b"));
+        assertThrows(FleetRegistry.UnknownServerException.class, () -> registry.evaluate("b", null));
+        assertEquals("False", registry.put("d", server).get("ErrorFlag"));
+    }
+
+    @Test
+    void decisionPublisherTest() {
+        Random random = new Random(21);
+        long start = TimestampParser.parse("05/11/2020 08:00:00");
+        TimingWheel<Long> wheel = new TimingWheel<>(start);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = start - 100 + (i % 2 == 0 ? random.nextInt(5000) : random.nextInt(10_000_000));
+            TimingWheel.Entry<Long> entry = wheel.schedule(deadline, Math.max(deadline, start));
+            if (i % 7 == 0) {
+                assertTrue("cancelled", wheel.cancel(entry));
+                assertFalse(wheel.cancel(entry));
+            } else {
+                expected.add(Math.max(deadline, start));
+            }
+        }
+        Collections.sort(expected);
+        List<Long> fired = new ArrayList<>();
+        for (long now = start; now < start + 10_000_000; now += random.nextInt(100_000)) {
+            long tick = now;
+            wheel.advance(now, deadline -> {
+                assertTrue("due", deadline <= tick);
+                fired.add(deadline);
+            });
+        }
+        wheel.advance(start + 10_000_000, fired::add);
+        assertEquals(expected, fired);
+        assertEquals(0, wheel.size());
+
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        AtomicLong clock = new AtomicLong(start);
+        DecisionPublisher publisher = new DecisionPublisher(processor, new ForecastProcessor(processor),
+                clock::get, Runnable::run, 30);
+        Map<String, String> input = new HashMap<>();
+        input.put("Work Hours", "[Mon-Fri 09:00-17:00][UOD 17:00]");
+        input.put("Time Zone", "UTC");
+        input.put("Launch Time", "05/10/2020 08:00:00");
+        input.put("Server State", "stopped");
+        List<String> ids = new ArrayList<>();
+        List<Map<String, String>> events = new ArrayList<>();
+        AtomicInteger heartbeats = new AtomicInteger();
+        DecisionPublisher.Listener listener = new DecisionPublisher.Listener() {
+            @Override
+            public void send(String id, Map<String, String> decision) {
+                ids.add(id);
+                events.add(decision);
+            }
+
+            @Override
+            public void heartbeat() {
+                heartbeats.incrementAndGet();
+            }
+
+            @Override
+            public void complete() {
+                events.add(null);
+            }
+        };
+        DecisionPublisher.Subscription subscription = publisher.subscribe(input, null, listener);
+        assertEquals(1, publisher.size());
+        Map<String, String> decisionInput = new HashMap<>(input);
+        decisionInput.put("Current Time", "05/11/2020 08:00:00");
+        Map<String, String> decision = new HashMap<>(processor.run(decisionInput));
+        decision.put("Time", "05/11/2020 08:00:00");
+        assertEquals(Collections.singletonList(decision), events);
+
+        // heartbeats are sent between transitions
+        clock.set(TimestampParser.parse("05/11/2020 08:00:30"));
+        publisher.tick();
+        assertEquals(1, heartbeats.get());
+        clock.set(TimestampParser.parse("05/11/2020 08:00:59"));
+        publisher.tick();
+        assertEquals(1, heartbeats.get());
+        assertEquals(1, events.size());
+        assertEquals(1, publisher.size());
+
+        for (String time : new String[]{"05/11/2020 08:59:59", "05/11/2020 09:00:00", "05/11/2020 17:30:00"}) {
+            clock.set(TimestampParser.parse(time));
+            publisher.tick();
+        }
+        assertEquals(3, events.size());
+        decisionInput.put("Current Time", "05/11/2020 09:00:00");
+        assertEquals(processor.run(decisionInput).get("Action"), events.get(1).get("Action"));
+        assertEquals("Start", events.get(1).get("Action"));
+        assertEquals("05/11/2020 09:00:00", events.get(1).get("Time"));
+        long startTime = TimestampParser.parse("05/11/2020 09:00:00");
+        assertEquals(startTime + ":1:" + startTime, ids.get(1));
+        decisionInput.put("Current Time", "05/11/2020 17:00:00");
+        decisionInput.put("Server State", "running");
+        decisionInput.put("Launch Time", "05/11/2020 09:00:00");
+        assertEquals(processor.run(decisionInput).get("Reason"), events.get(2).get("Reason"));
+        assertEquals("Stop", events.get(2).get("Action"));
+        assertEquals("05/11/2020 17:00:00", events.get(2).get("Time"));
+        subscription.cancel();
+        assertTrue("closed", subscription.isClosed());
+        assertEquals(0, publisher.size());
+
+        // a client that missed the stop resumes from the start event
+        events.clear();
+        clock.set(TimestampParser.parse("05/11/2020 17:05:00"));
+        publisher.subscribe(input, ids.get(1), listener);
+        assertEquals(1, events.size());
+        assertEquals("Stop", events.get(0).get("Action"));
+        assertEquals("05/11/2020 17:00:00", events.get(0).get("Time"));
+        clock.set(TimestampParser.parse("05/12/2020 09:00:00"));
+        publisher.tick();
+        assertEquals("Start", events.get(1).get("Action"));
+
+        // a client that is gone is cancelled by the next heartbeat
+        DecisionPublisher.Subscription gone = publisher.subscribe(input, null, new DecisionPublisher.Listener() {
+            @Override
+            public void send(String id, Map<String, String> decision) {
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void complete() {
+            }
+        });
+        assertFalse(gone.isClosed());
+        clock.addAndGet(30);
+        publisher.tick();
+        assertTrue("cancelled", gone.isClosed());
+
+        input.put("Work Hours", "[Mon-Fri 09:00-17:00][UOD 17:00][Foo]");
+        events.clear();
+        assertTrue("closed", publisher.subscribe(input, null, listener).isClosed());
+        assertEquals("True", events.get(0).get("ErrorFlag"));
+        assertNull(events.get(1));
+    }
+
+    @Test
+    void patchCalendarTest() {
+        assertSame(PatchCalendar.EMPTY, PatchCalendar.compile(""));
+        for (String invalid : new String[]{"[6 Mon 10:00]", "[2 Wed 24:00]", "[2 Wed 12:60]", "[2 wed 12:00]",
+                "2 Wed 12:00", "[2 Wed 12:00] ", "[2 Wed 12:00][", "[2 Wed 012:00]", "[2 Wed 12:00][0 Sat 03:30]"}) {
+            assertEquals("Incorrect patch time", PatchCalendar.compile(invalid).getError());
+        }
+        PatchCalendar calendar = PatchCalendar.compile("[2 Wed 12:00][4 Sat 3:30]");
+        assertFalse(calendar.isFailed());
+        // May 2020 starts on a Friday
+        assertTrue("2nd Wednesday", calendar.contains(13, DayOfWeek.WEDNESDAY.ordinal(), 12 * 60));
+        assertTrue("4th Saturday", calendar.contains(23, DayOfWeek.SATURDAY.ordinal(), 3 * 60 + 30));
+        assertFalse(calendar.contains(20, DayOfWeek.WEDNESDAY.ordinal(), 12 * 60));
+        assertFalse(calendar.contains(13, DayOfWeek.WEDNESDAY.ordinal(), 12 * 60 + 1));
+        long may13 = TimestampParser.parse("05/13/2020 12:00:00") / 60;
+        assertEquals(may13, calendar.next(TimestampParser.parse("05/01/2020 00:00:00") / 60));
+        assertEquals(may13, calendar.next(may13));
+        assertEquals(TimestampParser.parse("05/23/2020 03:30:00") / 60, calendar.next(may13 + 1));
+        assertEquals(TimestampParser.parse("01/13/2021 12:00:00") / 60,
+                calendar.next(TimestampParser.parse("12/26/2020 03:31:00") / 60));
+        assertEquals(PatchCalendar.NONE, PatchCalendar.EMPTY.next(may13));
+
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        assertSame(processor.getPatchCalendar("[2 Wed 12:00][4 Sat 3:30]"),
+                processor.getPatchCalendar("[2 Wed 12:00][4 Sat 3:30]"));
+        Map<String, String> json = new HashMap<>();
+        json.put("Work Hours", "[Mon-Fri 20:00-21:00]");
+        json.put("Patch Time", "[2 Wed 12:00][4 Sat 3:30]");
+        json.put("Time Zone", "Europe/Berlin");
+        json.put("Server State", "stopped");
+        json.put("Launch Time", "05/01/2020 20:00:00");
+        // patch time is matched against UTC + 1h during daylight saving time
+        for (String currentTime : new String[]{"05/13/2020 11:00:00", "05/23/2020 02:30:59"}) {
+            json.put("Current Time", currentTime);
+            Map<String, String> result = processor.run(json);
+            assertEquals("Start", result.get("Action"));
+            assertEquals("Patch Time turning on the server", result.get("Reason"));
+        }
+        json.put("Current Time", "05/23/2020 03:30:00");
+        assertEquals("Current time outside given work time", processor.run(json).get("Reason"));
+        json.put("Patch Time", "[2 Wed 12:00][4 Sat 3:3]");
+        assertEquals("Incorrect patch time", processor.run(json).get("ErrorMessage"));
+
+        ForecastProcessor forecastProcessor = new ForecastProcessor(processor);
+        json.put("Patch Time", "[2 Wed 12:00][4 Sat 3:30]");
+        json.put("Current Time", "05/13/2020 11:00:30");
+        assertEquals("05/13/2020 11:00:00", forecastProcessor.run(json).get("NextPatchTime"));
+        json.put("Current Time", "05/13/2020 11:01:00");
+        assertEquals("05/23/2020 02:30:00", forecastProcessor.run(json).get("NextPatchTime"));
+        json.put("Patch Time", "");
+        assertEquals("", forecastProcessor.run(json).get("NextPatchTime"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void simulationTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        ForecastProcessor forecastProcessor = new ForecastProcessor(processor);
+        SimulationProcessor sequential = new SimulationProcessor(processor, forecastProcessor, 1, 3660 * 86_400L);
+        SimulationProcessor chunked = new SimulationProcessor(processor, forecastProcessor, 4, 31 * 3600L);
+        String[] workHours = {"[Mon-Fri 09:00-17:00][UOD 17:00]", "[WE 10:00-12:00][UOD 12:30][UTC+2]", "[Manual]",
+                "[Mon,Wed,Fri 22:00-23:00][UOD 23:00][UTC-4]", "[24h][UOD 03:00]"};
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss");
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/uuuu");
+        try {
+            for (String workHour : workHours) {
+                for (String timeZone : new String[]{"UTC", "Europe/Berlin"}) {
+                    for (String state : new String[]{"stopped", "running"}) {
+                        Map<String, String> json = new HashMap<>();
+                        json.put("Work Hours", workHour);
+                        // the 5th Sunday of March 2020 is the day daylight saving time starts in Europe
+                        json.put("Patch Time", "[5 Sun 03:10]");
+                        json.put("Time Zone", timeZone);
+                        json.put("Server State", state);
+                        json.put("Launch Time", "03/25/2020 20:00:00");
+                        json.put("From", "03/26/2020 00:00:00");
+                        json.put("To", "04/02/2020 00:00:00");
+                        Map<String, Object> simulation = chunked.run(json);
+                        assertEquals("False", simulation.get("ErrorFlag"));
+                        assertEquals(sequential.run(json), simulation);
+
+                        // poll the processor every minute, following its decisions
+                        Map<String, String> poll = new HashMap<>(json);
+                        Map<String, long[]> days = new HashMap<>();
+                        boolean running = state.equals("running");
+                        LocalDateTime time = LocalDateTime.parse(json.get("From"), formatter);
+                        LocalDateTime until = LocalDateTime.parse(json.get("To"), formatter);
+                        for (; time.isBefore(until); time = time.plusMinutes(1)) {
+                            poll.put("Current Time", time.format(formatter));
+                            String action = processor.run(poll).get("Action");
+                            String date = time.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.of(timeZone))
+                                    .format(dateFormatter);
+                            long[] day = days.computeIfAbsent(date, key -> new long[3]);
+                            if (action.equals("Start") && !running) {
+                                running = true;
+                                poll.put("Server State", "running");
+                                poll.put("Launch Time", poll.get("Current Time"));
+                                day[1]++;
+                            } else if (action.equals("Stop") && running) {
+                                running = false;
+                                poll.put("Server State", "stopped");
+                                day[2]++;
+                            }
+                            day[0] += running ? 60 : 0;
+                        }
+                        List<Map<String, String>> simulatedDays = (List<Map<String, String>>) simulation.get("Days");
+                        assertEquals(days.size(), simulatedDays.size());
+                        long uptime = 0;
+                        for (Map<String, String> simulatedDay : simulatedDays) {
+                            long[] day = days.get(simulatedDay.get("Date"));
+                            String message = workHour + " " + timeZone + " " + state + " " + simulatedDay;
+                            assertEquals(String.valueOf(day[0]), simulatedDay.get("UptimeSeconds"), message);
+                            assertEquals(String.valueOf(day[1]), simulatedDay.get("Starts"), message);
+                            assertEquals(String.valueOf(day[2]), simulatedDay.get("Stops"), message);
+                            uptime += day[0];
+                        }
+                        assertEquals(String.valueOf(uptime), simulation.get("UptimeSeconds"));
+                    }
+                }
+            }
+
+            // [OSH n] stops the server n hours and a second after the launch
+            Map<String, String> json = new HashMap<>();
+            json.put("Work Hours", "[Mon-Fri 09:00-10:00][OSH 2]");
+            json.put("Time Zone", "UTC");
+            json.put("Server State", "running");
+            json.put("Launch Time", "05/11/2020 10:30:00");
+            json.put("From", "05/11/2020 10:30:00");
+            json.put("To", "05/11/2020 14:00:00");
+            Map<String, Object> simulation = chunked.run(json);
+            assertEquals("7201", simulation.get("UptimeSeconds"));
+            assertEquals("0", simulation.get("Starts"));
+            assertEquals("1", simulation.get("Stops"));
+
+            json.put("To", "05/11/2020 10:30:00");
+            assertEquals("Incorrect range: 05/11/2020 10:30:00 - 05/11/2020 10:30:00",
+                    chunked.run(json).get("ErrorMessage"));
+            json.remove("From");
+            assertEquals("Null argument", chunked.run(json).get("ErrorMessage"));
+        } finally {
+            sequential.shutdown();
+            chunked.shutdown();
+        }
+    }
+
+    @Test
+    void lintTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        LintProcessor lintProcessor = new LintProcessor(CommandRegistry.getDefault(), 4);
+        try {
+            List<String> workTimes = Arrays.asList("[Mon-Fri 09:00-17:00][UTC+2]", "[Mon-Fri 09:00-17:00][Foo]",
+                    "[Mon-Fri 09:00-17:00]Sat", "[Mon-Fri 25:00-17:00]", "[Mon-Fry 09:00-17:00]", "[UTC+2]",
+                    "[Mon-Fri 09:00-17:00][UTC+2][UTC+3]", "", null, "[Mon-Fri 09:00-17:00][UTC+2]");
+            List<Map<String, String>> results = lintProcessor.run(workTimes);
+            assertEquals(workTimes.size(), results.size());
+            assertEquals("False", results.get(0).get("ErrorFlag"));
+            assertEquals("", results.get(0).get("ErrorCode"));
+            assertEquals(results.get(0), results.get(9));
+            assertEquals("UNKNOWN_COMMAND", results.get(1).get("ErrorCode"));
+            assertEquals("Illegal command: Foo", results.get(1).get("ErrorMessage"));
+            assertEquals("1", results.get(1).get("ErrorIndex"));
+            assertEquals("21", results.get(1).get("ErrorOffset"));
+            assertEquals("MISSING_BRACKET", results.get(2).get("ErrorCode"));
+            assertEquals("TIME_FORMAT", results.get(3).get("ErrorCode"));
+            assertEquals("0", results.get(3).get("ErrorIndex"));
+            assertEquals("DAY_OF_WEEK", results.get(4).get("ErrorCode"));
+            assertEquals("NO_RESULT", results.get(5).get("ErrorCode"));
+            assertEquals("", results.get(5).get("ErrorIndex"));
+            assertEquals("CONFIGURATION", results.get(6).get("ErrorCode"));
+            assertEquals("2", results.get(6).get("ErrorIndex"));
+            assertEquals("EMPTY", results.get(7).get("ErrorCode"));
+            assertEquals("EMPTY", results.get(8).get("ErrorCode"));
+
+            // the diagnostics match the errors of /process and never start with "null"
+            Map<String, String> json = new HashMap<>();
+            json.put("Current Time", "05/11/2020 12:00:00");
+            json.put("Launch Time", "05/11/2020 08:00:00");
+            json.put("Time Zone", "UTC");
+            json.put("Server State", "running");
+            for (int i = 0; i < 8; i++) {
+                json.put("Work Hours", workTimes.get(i));
+                Map<String, String> result = results.get(i);
+                assertFalse(result.get("ErrorMessage").startsWith("null"));
+                assertEquals(processor.run(json).get("ErrorMessage"), result.get("ErrorMessage"), workTimes.get(i));
+            }
+
+            // duplicates are compiled once and every item gets its own result, LintBenchmark covers large sets
+            List<String> many = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                many.add(i % 2 == 0 ? "[Mon-Fri 09:00-" + (10 + i % 8) + ":00][UTC+2]"
+                        : "[Mon-Fri 09:00-17:00][Bar" + i % 10 + "]");
+            }
+            List<Map<String, String>> manyResults = lintProcessor.run(many);
+            assertEquals(many.size(), manyResults.size());
+            for (int i = 0; i < many.size(); i++) {
+                assertEquals(i % 2 == 0 ? "False" : "True", manyResults.get(i).get("ErrorFlag"));
+                assertEquals(manyResults.get(i % 40), manyResults.get(i));
+            }
+            assertNotSame(manyResults.get(0), manyResults.get(40));
+        } finally {
+            lintProcessor.shutdown();
+        }
+    }
+
+    @Test
+    void prioritizedEvaluationTest() {
+        ServerStateCommandProcessor processor = new ServerStateCommandProcessor();
+        assertPrioritizedEvaluation(processor, new Random(25), 3_000);
+
+        // [OFF] and [Manual] decide without evaluating the periods
+        Map<String, String> input = new HashMap<>();
+        input.put("Current Time", "05/11/2020 12:00:00");
+        input.put("Launch Time", "05/11/2020 08:00:00");
+        input.put("Time Zone", "UTC");
+        input.put("Server State", "running");
+        input.put("Work Hours", "[Mon-Fri 09:00-17:00][UOD 12:00][OFF]");
+        EvaluationContext context = new EvaluationContext();
+        processor.readInput(context, input);
+        CompiledSchedule schedule = processor.getScheduleCache().get(input.get("Work Hours"));
+        Result[] results = processor.processPrioritizedCommands(context, schedule);
+        assertNull(results[0]);
+        assertNull(results[1]);
+        assertEquals(ServerStateCommandProcessor.Action.IGNORE_ALL, results[2].getAction());
+        input.put("Work Hours", "[Mon-Fri 09:00-17:00][Manual][UOD 12:00]");
+        context = new EvaluationContext();
+        processor.readInput(context, input);
+        schedule = processor.getScheduleCache().get(input.get("Work Hours"));
+        results = processor.processPrioritizedCommands(context, schedule);
+        assertNull(results[0]);
+        assertEquals(ServerStateCommandProcessor.Action.IGNORE_TIME, results[1].getAction());
+        assertNull(results[2]);
+
+        // commands that don't declare their highest action keep the order of the string
+        CommandRegistry.Builder builder = new CommandRegistry.Builder();
+        builder.register("Fail", new Command() {
+            @Override
+            public Result execute(EvaluationContext context, ScheduleNode node) {
+                return new Result("Failed");
+            }
+        });
+        builder.register("OFF", CommandRegistry.getDefault().getCommand("OFF"));
+        ServerStateCommandProcessor custom = new ServerStateCommandProcessor(builder.build(), 10);
+        input.put("Work Hours", "[OFF][Fail]");
+        assertNull(custom.getScheduleCache().get("[OFF][Fail]").getPrioritizedBrackets());
+        assertEquals("Failed", custom.run(input).get("ErrorMessage"));
+    }
+
+    @Test
+    @Tag("slow")
+    void prioritizedEvaluationSweepTest() {
+        assertPrioritizedEvaluation(new ServerStateCommandProcessor(), new Random(25), 200_000);
+    }
+
+    /**
+     * Compares the prioritized evaluation with the evaluation of every command for random work time strings
+     * and times.
+     */
+    private static void assertPrioritizedEvaluation(ServerStateCommandProcessor processor, Random random,
+                                                    int iterations) {
+        String[] fragments = {"[OFF]", "[Manual]", "[24h]", "[Mon-Fri 09:00-17:00]", "[WE 10:00-12:00]",
+                "[All 08:30-08:31]", "[Wed 12:00-12:01]", "[OSH 1]", "[UOD 12:00]", "[UOD 17:00]", "[UTC+2]"};
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss");
+        LocalDateTime origin = LocalDateTime.of(2020, 5, 10, 0, 0);
+        for (int i = 0; i < iterations; i++) {
+            StringBuilder workTime = new StringBuilder();
+            for (int count = 1 + random.nextInt(5); count > 0; count--) {
+                workTime.append(fragments[random.nextInt(fragments.length)]);
+            }
+            // most times are close to the edges of the periods
+            LocalDateTime time = origin.plusDays(random.nextInt(8)).plusHours(random.nextInt(24))
+                    .plusMinutes(random.nextBoolean() ? random.nextInt(2) : random.nextInt(60));
+            Map<String, String> input = new HashMap<>();
+            input.put("Work Hours", workTime.toString());
+            input.put("Current Time", time.format(formatter));
+            input.put("Launch Time", time.minusMinutes(random.nextInt(180)).format(formatter));
+            input.put("Time Zone", random.nextBoolean() ? "UTC" : "Europe/Berlin");
+            input.put("Server State", random.nextBoolean() ? "running" : "stopped");
+            input.put("Patch Time", random.nextInt(4) == 0 ? "[2 Wed 12:00][3 Sun 10:00]" : "");
+
+            // the current interpreter runs every command in order
+            EvaluationContext expected = new EvaluationContext();
+            assertTrue(input.toString(), processor.readInput(expected, input));
+            CompiledSchedule schedule = processor.getScheduleCache().get(input.get("Work Hours"));
+            if (schedule.isFailed()) {
+                continue;
+            }
+            Result[] expectedResults = processor.processCommands(expected, schedule);
+            if (expectedResults != null) {
+                processor.calculateResult(expected, expectedResults);
+            }
+            EvaluationContext actual = new EvaluationContext();
+            processor.readInput(actual, input);
+            Result[] actualResults = processor.processPrioritizedCommands(actual, schedule);
+            if (actualResults != null) {
+                processor.calculateResult(actual, actualResults);
+            }
+            String message = input.toString();
+            assertEquals(expected.error, actual.error, message);
+            assertEquals(expected.action, actual.action, message);
+            assertEquals(expected.reason, actual.reason, message);
+        }
+    }
+}
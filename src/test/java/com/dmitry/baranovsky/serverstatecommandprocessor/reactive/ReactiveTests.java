@@ -0,0 +1,290 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.reactive;
+
+import com.dmitry.baranovsky.serverstatecommandprocessor.LintProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.ServerStateCommandProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.StreamProcessor;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.JwtRequest;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.UserData;
+import com.dmitry.baranovsky.serverstatecommandprocessor.security.UserRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the application with the reactive profile, without a database.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.autoconfigure.exclude="
+        + "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+        + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+        + "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration")
+@ActiveProfiles("reactive")
+class ReactiveTests {
+    private static final ParameterizedTypeReference<Map<String, String>> RESULT_TYPE =
+            new ParameterizedTypeReference<Map<String, String>>() {
+            };
+    private static final ParameterizedTypeReference<ServerSentEvent<Map<String, String>>> EVENT_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<Map<String, String>>>() {
+            };
+    private static final TypeReference<Map<String, String>> RESULT_TYPE_REFERENCE =
+            new TypeReference<Map<String, String>>() {
+            };
+    @Autowired
+    private WebTestClient client;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private ServerStateCommandProcessor processor;
+    @Autowired
+    private LintProcessor lintProcessor;
+    @Autowired
+    private ObjectMapper mapper;
+    @LocalServerPort
+    private int port;
+    @MockBean
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void addUser() {
+        when(userRepository.findByUserName("alice"))
+                .thenReturn(new UserData("alice", passwordEncoder.encode("secret")));
+    }
+
+    @Test
+    void authenticateTest() {
+        client.post().uri("/authenticate").bodyValue(new JwtRequest("alice", "wrong"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+        client.post().uri("/authenticate").bodyValue(new JwtRequest("bob", "secret"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+        client.post().uri("/process").bodyValue(input("[24h]"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+        client.post().uri("/process").header("Authorization", "Bearer not.a.token").bodyValue(input("[24h]"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        // the token is checked against the user loaded through the ReactiveUserDetailsService
+        client.post().uri("/process").header("Authorization", "Bearer " + token()).bodyValue(input("[24h]"))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void processTest() {
+        String token = token();
+        Map<String, String> input = input("[Mon-Fri 09:00-17:00][UOD 17:00]");
+        Map<String, String> result = client.post().uri("/process").header("Authorization", "Bearer " + token)
+                .bodyValue(input)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RESULT_TYPE)
+                .returnResult().getResponseBody();
+        assertEquals(processor.run(input), result);
+        assertEquals("Start", result.get("Action"));
+
+        List<Map<String, String>> inputs = Arrays.asList(input, input("[OFF]"), input("[Foo]"), new HashMap<>());
+        List<Map<String, String>> results = client.post().uri("/process/batch")
+                .header("Authorization", "Bearer " + token)
+                .bodyValue(inputs)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<Map<String, String>>>() {
+                })
+                .returnResult().getResponseBody();
+        assertNotNull(results);
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertEquals(processor.run(inputs.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    void streamTest() throws Exception {
+        Map<String, String> input = input("[Mon-Fri 09:00-17:00][UOD 17:00]");
+        String line = mapper.writeValueAsString(input) + "\n";
+        // the client keeps the chunked request open, the answer to its only line comes before the window is full
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(10_000);
+            String request = "POST /process/stream HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Authorization: Bearer " + token() + "\r\n"
+                    + "Content-Type: " + StreamProcessor.NDJSON + "\r\n"
+                    + "Accept: " + StreamProcessor.NDJSON + "\r\n"
+                    + "Transfer-Encoding: chunked\r\n\r\n"
+                    + Integer.toHexString(line.length()) + "\r\n" + line + "\r\n";
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            InputStream response = socket.getInputStream();
+            StringBuilder received = new StringBuilder();
+            byte[] buffer = new byte[4096];
+            while (received.indexOf("}") < 0) {
+                int count = response.read(buffer);
+                assertTrue(count > 0, "Answer received");
+                received.append(new String(buffer, 0, count, StandardCharsets.UTF_8));
+            }
+            assertTrue(received.toString().startsWith("HTTP/1.1 200"), received.toString());
+            String result = received.substring(received.indexOf("{"), received.indexOf("}") + 1);
+            assertEquals(processor.run(input), mapper.readValue(result, RESULT_TYPE_REFERENCE));
+        }
+    }
+
+    @Test
+    void fleetTest() {
+        String token = token();
+        Map<String, String> server = input("[Mon-Fri 09:00-17:00]");
+        server.remove("Current Time");
+        Map<String, String> result = client.put().uri("/servers/reactive-1").header("Authorization", "Bearer " + token)
+                .bodyValue(server)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RESULT_TYPE)
+                .returnResult().getResponseBody();
+        assertNotNull(result);
+        assertEquals("False", result.get("ErrorFlag"));
+        Map<String, String> registered = client.get().uri("/servers/reactive-1")
+                .header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RESULT_TYPE)
+                .returnResult().getResponseBody();
+        assertNotNull(registered);
+        assertEquals("[Mon-Fri 09:00-17:00]", registered.get("Work Hours"));
+
+        Map<String, String> current = new HashMap<>();
+        current.put("Current Time", "05/11/2020 09:00:00");
+        Map<String, String> decision = client.post().uri("/process/reactive-1")
+                .header("Authorization", "Bearer " + token)
+                .bodyValue(current)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(RESULT_TYPE)
+                .returnResult().getResponseBody();
+        assertEquals(processor.run(input("[Mon-Fri 09:00-17:00]")), decision);
+
+        client.delete().uri("/servers/reactive-1").header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk();
+        client.get().uri("/servers/reactive-1").header("Authorization", "Bearer " + token)
+                .exchange()
+                .expectStatus().isNotFound();
+        client.post().uri("/process/reactive-1").header("Authorization", "Bearer " + token)
+                .bodyValue(current)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void subscribeTest() {
+        String token = token();
+        ServerSentEvent<Map<String, String>> event = client.post().uri("/process/subscribe")
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(input("[24h]"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(EVENT_TYPE)
+                .getResponseBody()
+                .blockFirst(Duration.ofSeconds(10));
+        assertNotNull(event);
+        assertEquals("decision", event.event());
+        assertNotNull(event.id());
+        assertEquals("Start", event.data().get("Action"));
+        assertEquals("False", event.data().get("ErrorFlag"));
+
+        // an invalid input ends the stream after the error
+        List<ServerSentEvent<Map<String, String>>> events = client.post().uri("/process/subscribe")
+                .header("Authorization", "Bearer " + token)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(input("[Foo]"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(EVENT_TYPE)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        assertNotNull(events);
+        assertEquals(1, events.size());
+        assertEquals("True", events.get(0).data().get("ErrorFlag"));
+    }
+
+    @Test
+    void simulateTest() {
+        Map<String, String> input = input("[Mon-Fri 09:00-17:00][UOD 17:00]");
+        input.remove("Current Time");
+        input.put("From", "05/11/2020 00:00:00");
+        input.put("To", "05/18/2020 00:00:00");
+        Map<String, Object> result = client.post().uri("/simulate").header("Authorization", "Bearer " + token())
+                .bodyValue(input)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, Object>>() {
+                })
+                .returnResult().getResponseBody();
+        assertNotNull(result);
+        assertEquals("False", result.get("ErrorFlag"));
+        assertEquals(String.valueOf(5 * 8 * 3600), String.valueOf(result.get("UptimeSeconds")));
+    }
+
+    @Test
+    void lintTest() {
+        List<String> workTimes = Arrays.asList("[Mon-Fri 09:00-17:00]", "[Foo]", "", "[Mon-Fri 09:00-17:00]");
+        List<Map<String, String>> results = client.post().uri("/lint").header("Authorization", "Bearer " + token())
+                .bodyValue(workTimes)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<Map<String, String>>>() {
+                })
+                .returnResult().getResponseBody();
+        assertEquals(lintProcessor.run(workTimes), results);
+        assertEquals("False", results.get(0).get("ErrorFlag"));
+        assertEquals("True", results.get(1).get("ErrorFlag"));
+    }
+
+    private String token() {
+        Map<String, String> response = client.post().uri("/authenticate").bodyValue(new JwtRequest("alice", "secret"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RESULT_TYPE)
+                .returnResult().getResponseBody();
+        assertNotNull(response);
+        return response.get("token");
+    }
+
+    private static Map<String, String> input(String workHours) {
+        Map<String, String> json = new HashMap<>();
+        json.put("Work Hours", workHours);
+        json.put("Current Time", "05/11/2020 09:00:00");
+        json.put("Launch Time", "05/11/2020 01:00:00");
+        json.put("Time Zone", "UTC");
+        json.put("Server State", "stopped");
+        json.put("Patch Time", "");
+        return json;
+    }
+}
@@ -0,0 +1,187 @@
+package com.dmitry.baranovsky.serverstatecommandprocessor.security;
+
+import com.google.common.base.Ticker;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class SecurityTests {
+    @Test
+    void jwtClaimsCacheTest() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil(10, () -> new Date(now.get()));
+        String token = jwtTokenUtil.generateToken(new User("alice", "", new ArrayList<>()));
+        Function<Claims, Claims> claims = Function.identity();
+
+        // a cached token is not parsed and verified again
+        Claims first = jwtTokenUtil.getClaimFromToken(token, claims);
+        assertEquals("alice", first.getSubject());
+        assertSame(first, jwtTokenUtil.getClaimFromToken(token, claims));
+
+        // a tampered token is rejected every time, so it has not been cached
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertThrows(JwtException.class, () -> jwtTokenUtil.getUsernameFromToken(tampered));
+        assertThrows(JwtException.class, () -> jwtTokenUtil.getUsernameFromToken(tampered));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + parts[1].substring(0, parts[1].length() - 2) + "xx." + parts[2];
+        assertThrows(JwtException.class, () -> jwtTokenUtil.getUsernameFromToken(forged));
+        assertThrows(JwtException.class, () -> jwtTokenUtil.getUsernameFromToken(forged));
+
+        // an expired token is rejected although its claims are cached
+        now.addAndGet(JwtTokenUtil.JWT_TOKEN_VALIDITY * 1000 + 1000);
+        assertThrows(ExpiredJwtException.class, () -> jwtTokenUtil.getUsernameFromToken(token));
+        assertThrows(ExpiredJwtException.class, () -> jwtTokenUtil.getUsernameFromToken(token));
+
+        // a new token is verified once more
+        String renewed = jwtTokenUtil.generateToken(new User("alice", "", new ArrayList<>()));
+        assertNotSame(first, jwtTokenUtil.getClaimFromToken(renewed, claims));
+    }
+
+    @Test
+    void jwtRequestFilterTest() throws Exception {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil(10, Date::new);
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findByUserName("alice")).thenReturn(new UserData("alice", "hash"));
+        JwtUserDetailsService userDetailsService = new JwtUserDetailsService(repository, 10, 60, 3600, 10,
+                Ticker.systemTicker(), Runnable::run);
+        JwtRequestFilter filter = new JwtRequestFilter();
+        ReflectionTestUtils.setField(filter, "jwtUserDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "jwtTokenUtil", jwtTokenUtil);
+        String token = jwtTokenUtil.generateToken(new User("alice", "", new ArrayList<>()));
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        try {
+            for (String header : new String[]{"Bearer " + tampered, "Bearer not.a.token", "Bearer ", token}) {
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/process");
+                request.addHeader("Authorization", header);
+                MockFilterChain chain = new MockFilterChain();
+                filter.doFilter(request, new MockHttpServletResponse(), chain);
+                // the request goes on unauthenticated and is rejected by the security configuration
+                assertNotNull(chain.getRequest(), header);
+                assertNull(SecurityContextHolder.getContext().getAuthentication(), header);
+            }
+
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/process");
+            request.addHeader("Authorization", "Bearer " + token);
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            assertEquals("alice", SecurityContextHolder.getContext().getAuthentication().getName());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    void userCacheTest() throws Exception {
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findByUserName("alice")).thenReturn(new UserData("alice", "hash"));
+        AtomicLong now = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return now.get();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        JwtUserDetailsService userDetailsService = new JwtUserDetailsService(repository, 10, 60, 3600, 10, ticker,
+                executor);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        new UserCacheMetricsBinder(userDetailsService).bindTo(registry);
+        try {
+            // a fresh user is served from the cache as new details, erasing their credentials doesn't affect it
+            UserDetails alice = userDetailsService.loadUserByUsername("alice");
+            ((User) alice).eraseCredentials();
+            UserDetails cached = userDetailsService.loadUserByUsername("alice");
+            assertNotSame(alice, cached);
+            assertEquals("hash", cached.getPassword());
+            assertEquals(1.0, registry.get("user.cache.loads").functionCounter().count());
+            assertEquals(1.0, registry.get("user.cache.hits").functionCounter().count());
+
+            // an expired user is served at once and reloaded in the background
+            doReturn(new UserData("alice", "hash2")).when(repository).findByUserName("alice");
+            now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+            assertEquals("hash", userDetailsService.loadUserByUsername("alice").getPassword());
+            executor.submit(() -> null).get();
+            assertEquals(2.0, registry.get("user.cache.loads").functionCounter().count());
+            assertEquals(1.0, registry.get("user.cache.stale").functionCounter().count());
+            assertEquals("hash2", userDetailsService.loadUserByUsername("alice").getPassword());
+
+            // a slow repository doesn't delay requests and is asked only once
+            CountDownLatch release = new CountDownLatch(1);
+            when(repository.findByUserName("alice")).thenAnswer(invocation -> {
+                release.await();
+                throw new IllegalStateException("Database is down");
+            });
+            now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                assertEquals("hash2", userDetailsService.loadUserByUsername("alice").getPassword());
+            }
+            assertTrue("Stale users are served without waiting",
+                    System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+            release.countDown();
+            executor.submit(() -> null).get();
+            assertEquals(3.0, registry.get("user.cache.loads").functionCounter().count());
+            assertEquals(101.0, registry.get("user.cache.stale").functionCounter().count());
+
+            // a failed reload is not retried before the retry interval has passed
+            now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+            assertEquals("hash2", userDetailsService.loadUserByUsername("alice").getPassword());
+            executor.submit(() -> null).get();
+            assertEquals(3.0, registry.get("user.cache.loads").functionCounter().count());
+            now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+            assertEquals("hash2", userDetailsService.loadUserByUsername("alice").getPassword());
+            executor.submit(() -> null).get();
+            assertEquals(4.0, registry.get("user.cache.loads").functionCounter().count());
+
+            // a user that no longer exists is evicted
+            doReturn(null).when(repository).findByUserName("alice");
+            now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+            assertEquals("hash2", userDetailsService.loadUserByUsername("alice").getPassword());
+            executor.submit(() -> null).get();
+            assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("alice"));
+            verify(repository, times(6)).findByUserName("alice");
+
+            // users are not served beyond the maximum staleness
+            doReturn(new UserData("alice", "hash")).when(repository).findByUserName("alice");
+            userDetailsService.loadUserByUsername("alice");
+            doThrow(new IllegalStateException("Database is down")).when(repository).findByUserName("alice");
+            now.addAndGet(TimeUnit.SECONDS.toNanos(3600));
+            assertThrows(IllegalStateException.class, () -> userDetailsService.loadUserByUsername("alice"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}